@@ -0,0 +1,138 @@
+package cn.dongjak.apt.benchmark;
+
+import cn.dongjak.annotations.vo.VO;
+import cn.dongjak.apt.vo.VOAnnotationProcessor;
+
+import javax.tools.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * 在进程内通过{@link JavaCompiler}对合成的领域模型运行{@link VOAnnotationProcessor},报告每一轮的耗时和内存
+ * <p>
+ * 参数:
+ * <ul>
+ * <li>{@code --profile=SMALL|MEDIUM|LARGE} 领域模型规模,默认MEDIUM</li>
+ * <li>{@code --mode=OPTIONAL|GETTER_CHAIN} 生成from方法的方式,默认OPTIONAL</li>
+ * <li>{@code --warmup=N} 预热次数,默认3</li>
+ * <li>{@code --iterations=N} 计量次数,默认5</li>
+ * <li>{@code --parallel} 打开{@value VOAnnotationProcessor#PARALLEL_OPTION}</li>
+ * </ul>
+ * 只运行注解处理({@code -proc:only}),生成的VO源码不会被编译
+ */
+public class CompileBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> arguments = parseArguments(args);
+        SizeProfile profile = SizeProfile.valueOf(arguments.getOrDefault("profile", SizeProfile.MEDIUM.name()));
+        VO.MappingMode mappingMode = VO.MappingMode.valueOf(arguments.getOrDefault("mode", VO.MappingMode.OPTIONAL.name()));
+        int warmup = Integer.parseInt(arguments.getOrDefault("warmup", "3"));
+        int iterations = Integer.parseInt(arguments.getOrDefault("iterations", "5"));
+        boolean parallel = arguments.containsKey("parallel");
+
+        List<JavaFileObject> sources = new SyntheticDomain(profile, mappingMode).generateSources();
+        System.out.printf("profile=%s %s, mode=%s, parallel=%s, sources=%d%n", profile, describe(profile), mappingMode, parallel, sources.size());
+
+        for (int i = 0; i < warmup; i++)
+            compile(sources, parallel);
+
+        List<List<TimingProcessor.RoundStats>> measured = new ArrayList<>();
+        for (int i = 0; i < iterations; i++) {
+            List<TimingProcessor.RoundStats> rounds = compile(sources, parallel);
+            measured.add(rounds);
+            System.out.printf("iteration %d%n", i + 1);
+            for (TimingProcessor.RoundStats round : rounds)
+                System.out.printf("  round %d: roots=%5d wall=%9.2f ms allocated=%9.2f MB retained=%9.2f MB%n",
+                        round.getRound(), round.getRootElements(), round.getWallNanos() / 1e6,
+                        round.getAllocatedBytes() / 1048576.0, round.getRetainedBytes() / 1048576.0);
+        }
+        report(measured);
+    }
+
+    private static List<TimingProcessor.RoundStats> compile(List<JavaFileObject> sources, boolean parallel) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null)
+            throw new IllegalStateException("需要在JDK上运行,当前运行环境没有提供JavaCompiler");
+
+        Path sourceOutput = Files.createTempDirectory("vo-benchmark-sources");
+        try {
+            StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, Locale.ROOT, StandardCharsets.UTF_8);
+            fileManager.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singleton(sourceOutput.toFile()));
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singleton(sourceOutput.toFile()));
+            fileManager.setLocation(StandardLocation.CLASS_PATH, annotationClassPath());
+
+            List<String> options = new ArrayList<>(Arrays.asList("-proc:only", "-source", "1.8", "-Xlint:-options"));
+            if (parallel) options.add("-A" + VOAnnotationProcessor.PARALLEL_OPTION + "=true");
+
+            TimingProcessor processor = new TimingProcessor(new VOAnnotationProcessor());
+            StringWriter output = new StringWriter();
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+            JavaCompiler.CompilationTask task = compiler.getTask(output, fileManager, diagnostics, options, null, sources);
+            task.setProcessors(Collections.singleton(processor));
+            if (!task.call()) {
+                diagnostics.getDiagnostics().stream()
+                        .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                        .forEach(System.err::println);
+                throw new IllegalStateException("合成的领域模型处理失败");
+            }
+            fileManager.close();
+            return processor.getRounds();
+        } finally {
+            deleteRecursively(sourceOutput.toFile());
+        }
+    }
+
+    private static void report(List<List<TimingProcessor.RoundStats>> measured) {
+        long[] wall = measured.stream().mapToLong(rounds -> rounds.stream().mapToLong(TimingProcessor.RoundStats::getWallNanos).sum()).sorted().toArray();
+        long[] allocated = measured.stream().mapToLong(rounds -> rounds.stream().mapToLong(TimingProcessor.RoundStats::getAllocatedBytes).sum()).sorted().toArray();
+        long retained = measured.stream().mapToLong(rounds -> rounds.stream().mapToLong(TimingProcessor.RoundStats::getRetainedBytes).max().orElse(0)).max().orElse(0);
+        System.out.printf("summary: wall min=%.2f ms median=%.2f ms max=%.2f ms, allocated median=%.2f MB, retained max=%.2f MB%n",
+                wall[0] / 1e6, wall[wall.length / 2] / 1e6, wall[wall.length - 1] / 1e6,
+                allocated[allocated.length / 2] / 1048576.0, retained / 1048576.0);
+    }
+
+    /**
+     * 合成的实体类只引用本项目的注解,生成的VO还会引用lombok、swagger和guava
+     */
+    private static List<File> annotationClassPath() {
+        List<File> classPath = new ArrayList<>();
+        for (Class<?> type : Arrays.asList(VO.class, lombok.Data.class, io.swagger.annotations.ApiModel.class, com.google.common.base.Defaults.class)) {
+            try {
+                classPath.add(new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return classPath;
+    }
+
+    private static String describe(SizeProfile profile) {
+        return String.format("(entities=%d, fields=%d, inheritanceDepth=%d, dottedFields=%d, scenes=%d, pathDepth=%d)",
+                profile.getEntities(), profile.getFields(), profile.getInheritanceDepth(),
+                profile.getDottedFields(), profile.getScenes(), profile.getPathDepth());
+    }
+
+    private static Map<String, String> parseArguments(String[] args) {
+        Map<String, String> arguments = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) throw new IllegalArgumentException("无法识别的参数: " + arg);
+            int separator = arg.indexOf('=');
+            if (separator < 0) arguments.put(arg.substring(2), "true");
+            else arguments.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return arguments;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null)
+            for (File child : children)
+                deleteRecursively(child);
+        file.delete();
+    }
+}
@@ -0,0 +1,46 @@
+package cn.dongjak.apt.benchmark;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 合成领域模型的规模,同一个规模每次生成的源码完全相同
+ */
+@Getter
+@AllArgsConstructor
+public enum SizeProfile {
+
+    SMALL(50, 10, 1, 2, 2, 2),
+    MEDIUM(200, 20, 2, 4, 3, 3),
+    LARGE(600, 30, 3, 8, 4, 4);
+
+    /**
+     * 实体类数量
+     */
+    private final int entities;
+
+    /**
+     * 每个实体类自身声明的字段数量
+     */
+    private final int fields;
+
+    /**
+     * 每个实体类的父类层数
+     */
+    private final int inheritanceDepth;
+
+    /**
+     * 每个场景通过{@code @VO.Field}声明的路径表达式数量
+     */
+    private final int dottedFields;
+
+    /**
+     * 每个实体类上{@code @VOS}声明的场景数量
+     */
+    private final int scenes;
+
+    /**
+     * 路径表达式经过的{@code @UseVo}关联层数
+     */
+    private final int pathDepth;
+}
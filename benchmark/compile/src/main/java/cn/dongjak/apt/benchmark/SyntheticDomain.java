@@ -0,0 +1,132 @@
+package cn.dongjak.apt.benchmark;
+
+import cn.dongjak.annotations.vo.VO;
+
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按{@link SizeProfile}生成合成的实体类源码
+ * <p>
+ * 第i个实体类通过{@code @UseVo}字段{@code ref}和{@code refs}关联第i+1个实体类,最后一个关联回第一个,
+ * 每个实体类继承{@link SizeProfile#getInheritanceDepth()}层父类
+ */
+public class SyntheticDomain {
+
+    public static final String PACKAGE_NAME = "bench.domain";
+
+    private static final String[] FIELD_TYPES = {"String", "int", "Long", "boolean", "java.math.BigDecimal", "double", "java.util.Date"};
+
+    private final SizeProfile profile;
+
+    private final VO.MappingMode mappingMode;
+
+    public SyntheticDomain(SizeProfile profile, VO.MappingMode mappingMode) {
+        this.profile = profile;
+        this.mappingMode = mappingMode;
+    }
+
+    public List<JavaFileObject> generateSources() {
+        List<JavaFileObject> sources = new ArrayList<>();
+        for (int i = 0; i < profile.getEntities(); i++) {
+            for (int depth = 0; depth < profile.getInheritanceDepth(); depth++)
+                sources.add(source(baseClassName(i, depth), generateBaseClass(i, depth)));
+            sources.add(source(entityName(i), generateEntity(i)));
+        }
+        return sources;
+    }
+
+    private String entityName(int index) {
+        return "Entity" + index;
+    }
+
+    private String baseClassName(int index, int depth) {
+        return entityName(index) + "Base" + depth;
+    }
+
+    private String generateBaseClass(int index, int depth) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("package ").append(PACKAGE_NAME).append(";\n\n");
+        builder.append("public class ").append(baseClassName(index, depth));
+        if (depth > 0) builder.append(" extends ").append(baseClassName(index, depth - 1));
+        builder.append(" {\n");
+        appendProperty(builder, "Long", "base" + depth + "Id", null);
+        appendProperty(builder, "String", "base" + depth + "Name", null);
+        builder.append("}\n");
+        return builder.toString();
+    }
+
+    private String generateEntity(int index) {
+        String next = entityName((index + 1) % profile.getEntities());
+        String nextVo = PACKAGE_NAME + "." + next + "VO";
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("package ").append(PACKAGE_NAME).append(";\n\n");
+        builder.append("import cn.dongjak.annotations.DbComment;\n");
+        builder.append("import cn.dongjak.annotations.vo.UseVo;\n");
+        builder.append("import cn.dongjak.annotations.vo.VO;\n");
+        builder.append("import cn.dongjak.annotations.vo.VOS;\n\n");
+        builder.append("@DbComment(\"").append(entityName(index)).append("\")\n");
+        builder.append("@VOS({\n");
+        builder.append("        @VO(mappingMode = VO.MappingMode.").append(mappingMode).append(")");
+        for (int scene = 1; scene < profile.getScenes(); scene++) {
+            builder.append(",\n        @VO(sceneName = \"Scene").append(scene).append("\", mappingMode = VO.MappingMode.").append(mappingMode)
+                    .append(", excludes = {\"field").append(scene % profile.getFields()).append("\"}, fields = {");
+            for (int dotted = 0; dotted < profile.getDottedFields(); dotted++) {
+                if (dotted > 0) builder.append(", ");
+                builder.append("@VO.Field(name = \"path").append(dotted).append("\", expression = \"")
+                        .append(dottedExpression(scene + dotted)).append("\")");
+            }
+            builder.append("})");
+        }
+        builder.append("\n})\n");
+        builder.append("public class ").append(entityName(index));
+        if (profile.getInheritanceDepth() > 0)
+            builder.append(" extends ").append(baseClassName(index, profile.getInheritanceDepth() - 1));
+        builder.append(" {\n");
+        for (int field = 0; field < profile.getFields(); field++)
+            appendProperty(builder, FIELD_TYPES[field % FIELD_TYPES.length], "field" + field, "@DbComment(\"field" + field + "\")");
+        appendProperty(builder, next, "ref", "@UseVo(\"" + nextVo + "\")");
+        appendProperty(builder, "java.util.List<" + next + ">", "refs", "@UseVo(\"" + nextVo + "\")");
+        builder.append("}\n");
+        return builder.toString();
+    }
+
+    /**
+     * 生成经过{@link SizeProfile#getPathDepth()}层关联的路径表达式,交替指向自身字段和父类字段
+     */
+    private String dottedExpression(int seed) {
+        StringBuilder expression = new StringBuilder();
+        for (int depth = 0; depth < profile.getPathDepth(); depth++)
+            expression.append("ref.");
+        if (profile.getInheritanceDepth() > 0 && seed % 2 == 1)
+            expression.append("base").append(seed % profile.getInheritanceDepth()).append("Name");
+        else
+            expression.append("field").append(seed % profile.getFields());
+        return expression.toString();
+    }
+
+    private void appendProperty(StringBuilder builder, String type, String name, String annotation) {
+        String capitalized = name.substring(0, 1).toUpperCase() + name.substring(1);
+        builder.append("\n");
+        if (annotation != null) builder.append("    ").append(annotation).append("\n");
+        builder.append("    private ").append(type).append(" ").append(name).append(";\n\n");
+        builder.append("    public ").append(type).append(" ").append(type.equals("boolean") ? "is" : "get").append(capitalized)
+                .append("() {\n        return ").append(name).append(";\n    }\n\n");
+        builder.append("    public void set").append(capitalized).append("(").append(type).append(" ").append(name)
+                .append(") {\n        this.").append(name).append(" = ").append(name).append(";\n    }\n");
+    }
+
+    private static JavaFileObject source(String simpleName, String content) {
+        URI uri = URI.create("string:///" + PACKAGE_NAME.replace('.', '/') + "/" + simpleName + JavaFileObject.Kind.SOURCE.extension);
+        return new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return content;
+            }
+        };
+    }
+}
@@ -0,0 +1,96 @@
+package cn.dongjak.apt.benchmark;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 包装被测的处理器,记录每一轮处理的耗时、分配的内存和处理后仍然存活的堆内存
+ * <p>
+ * 分配的内存只统计处理器线程,并行生成时工作线程上的分配不在其中
+ */
+public class TimingProcessor implements Processor {
+
+    private final Processor delegate;
+
+    private final List<RoundStats> rounds = new ArrayList<>();
+
+    private final com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+
+    public TimingProcessor(Processor delegate) {
+        this.delegate = delegate;
+    }
+
+    public List<RoundStats> getRounds() {
+        return rounds;
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        boolean claimed = delegate.process(annotations, roundEnv);
+        long wallNanos = System.nanoTime() - start;
+        long allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        System.gc();
+        long retainedBytes = memoryMXBean.getHeapMemoryUsage().getUsed();
+        rounds.add(new RoundStats(rounds.size() + 1, roundEnv.getRootElements().size(), wallNanos, allocatedBytes, retainedBytes));
+        return claimed;
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return delegate.getSupportedOptions();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return delegate.getSupportedAnnotationTypes();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return delegate.getSupportedSourceVersion();
+    }
+
+    @Override
+    public void init(ProcessingEnvironment processingEnv) {
+        delegate.init(processingEnv);
+    }
+
+    @Override
+    public Iterable<? extends Completion> getCompletions(Element element, AnnotationMirror annotation, ExecutableElement member, String userText) {
+        return delegate.getCompletions(element, annotation, member, userText);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class RoundStats {
+
+        private final int round;
+
+        private final int rootElements;
+
+        private final long wallNanos;
+
+        private final long allocatedBytes;
+
+        private final long retainedBytes;
+    }
+}
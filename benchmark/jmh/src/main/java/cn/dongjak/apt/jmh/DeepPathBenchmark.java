@@ -0,0 +1,42 @@
+package cn.dongjak.apt.jmh;
+
+import cn.dongjak.apt.jmh.domain.Order;
+import cn.dongjak.apt.jmh.domain.OrderVOForGetterChainDeep;
+import cn.dongjak.apt.jmh.domain.OrderVOForOptionalDeep;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 经过两层关联的路径表达式,例如{@code customer.address.city}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeepPathBenchmark {
+
+    private Order order;
+
+    @Setup
+    public void setUp() {
+        order = Fixtures.order(42, 0);
+    }
+
+    @Benchmark
+    public OrderVOForGetterChainDeep handWritten() {
+        return HandWrittenMappers.deep(order);
+    }
+
+    @Benchmark
+    public OrderVOForOptionalDeep optional() {
+        return OrderVOForOptionalDeep.from(order);
+    }
+
+    @Benchmark
+    public OrderVOForGetterChainDeep getterChain() {
+        return OrderVOForGetterChainDeep.from(order);
+    }
+}
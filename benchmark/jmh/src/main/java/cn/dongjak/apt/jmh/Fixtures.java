@@ -0,0 +1,67 @@
+package cn.dongjak.apt.jmh;
+
+import cn.dongjak.apt.jmh.domain.Address;
+import cn.dongjak.apt.jmh.domain.Customer;
+import cn.dongjak.apt.jmh.domain.Order;
+import cn.dongjak.apt.jmh.domain.OrderLine;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 测试数据,每个订单有自己的客户、地址和明细
+ */
+public class Fixtures {
+
+    public static Order order(int index, int lines) {
+        Address address = new Address();
+        address.setCity("city" + index % 100);
+        address.setStreet("street" + index);
+        address.setZip(100000 + index);
+
+        Customer customer = new Customer();
+        customer.setName("customer" + index);
+        customer.setLevel(index % 5);
+        customer.setAddress(address);
+
+        Order order = new Order();
+        order.setId((long) index);
+        order.setCode("order" + index);
+        order.setAmount(index * 1.5);
+        order.setQuantity(index % 10);
+        order.setPaid(index % 2 == 0);
+        order.setDiscount(BigDecimal.valueOf(index % 7));
+        order.setCreatedAt(new Date(1500000000000L + index));
+        order.setCustomer(customer);
+
+        List<OrderLine> orderLines = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            OrderLine orderLine = new OrderLine();
+            orderLine.setProduct("product" + i);
+            orderLine.setPrice(i * 2.5);
+            orderLine.setCount(i + 1);
+            orderLines.add(orderLine);
+        }
+        order.setLines(orderLines);
+        return order;
+    }
+
+    public static List<Order> orders(int size, int lines) {
+        List<Order> orders = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            orders.add(order(i, lines));
+        return orders;
+    }
+
+    /**
+     * 订单只引用{@code distinct}组不同的明细,用于测试映射上下文对共享实体的复用
+     */
+    public static List<Order> ordersSharingLines(int size, int lines, int distinct) {
+        List<Order> orders = orders(size, lines);
+        for (int i = distinct; i < size; i++)
+            orders.get(i).setLines(orders.get(i % distinct).getLines());
+        return orders;
+    }
+}
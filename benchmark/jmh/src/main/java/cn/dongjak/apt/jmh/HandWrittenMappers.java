@@ -0,0 +1,72 @@
+package cn.dongjak.apt.jmh;
+
+import cn.dongjak.apt.jmh.domain.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 手写的映射代码,作为生成代码的对照,产生和生成代码相同的VO
+ */
+public class HandWrittenMappers {
+
+    public static OrderVOForGetterChain flat(Order order) {
+        return OrderVOForGetterChain.builder()
+                .id(order.getId())
+                .code(order.getCode())
+                .amount(order.getAmount())
+                .quantity(order.getQuantity())
+                .paid(order.isPaid())
+                .discount(order.getDiscount())
+                .createdAt(order.getCreatedAt())
+                .build();
+    }
+
+    public static List<OrderVOForGetterChain> flatList(List<Order> orders) {
+        List<OrderVOForGetterChain> result = new ArrayList<>(orders.size());
+        for (Order order : orders)
+            result.add(flat(order));
+        return result;
+    }
+
+    public static OrderVOForGetterChainDeep deep(Order order) {
+        Customer customer = order.getCustomer();
+        Address address = customer == null ? null : customer.getAddress();
+        return OrderVOForGetterChainDeep.builder()
+                .code(order.getCode())
+                .customerName(customer == null ? null : customer.getName())
+                .customerLevel(customer == null ? 0 : customer.getLevel())
+                .city(address == null ? null : address.getCity())
+                .street(address == null ? null : address.getStreet())
+                .zip(address == null ? 0 : address.getZip())
+                .build();
+    }
+
+    public static OrderVOForGetterChainNested nested(Order order) {
+        List<OrderLine> orderLines = order.getLines();
+        List<OrderLineVO> lines = new ArrayList<>(orderLines.size());
+        for (OrderLine orderLine : orderLines)
+            lines.add(OrderLineVO.builder()
+                    .product(orderLine.getProduct())
+                    .price(orderLine.getPrice())
+                    .count(orderLine.getCount())
+                    .build());
+        return OrderVOForGetterChainNested.builder()
+                .id(order.getId())
+                .code(order.getCode())
+                .amount(order.getAmount())
+                .quantity(order.getQuantity())
+                .paid(order.isPaid())
+                .discount(order.getDiscount())
+                .createdAt(order.getCreatedAt())
+                .lines(lines)
+                .build();
+    }
+
+    public static List<OrderVOForGetterChainNested> nestedList(List<Order> orders) {
+        List<OrderVOForGetterChainNested> result = new ArrayList<>(orders.size());
+        for (Order order : orders)
+            result.add(nested(order));
+        return result;
+    }
+}
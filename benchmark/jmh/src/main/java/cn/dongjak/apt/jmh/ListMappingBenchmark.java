@@ -0,0 +1,63 @@
+package cn.dongjak.apt.jmh;
+
+import cn.dongjak.apt.jmh.domain.Order;
+import cn.dongjak.apt.jmh.domain.OrderVOForGetterChain;
+import cn.dongjak.apt.jmh.domain.OrderVOForGetterChainImmutable;
+import cn.dongjak.apt.jmh.domain.OrderVOForGetterChainMetrics;
+import cn.dongjak.apt.jmh.domain.OrderVOForOptional;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 列表的平铺字段映射
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListMappingBenchmark {
+
+    @Param({"1000", "100000"})
+    private int size;
+
+    private List<Order> orders;
+
+    @Setup
+    public void setUp() {
+        orders = Fixtures.orders(size, 0);
+    }
+
+    @Benchmark
+    public List<OrderVOForGetterChain> handWritten() {
+        return HandWrittenMappers.flatList(orders);
+    }
+
+    @Benchmark
+    public List<OrderVOForOptional> optional() {
+        return OrderVOForOptional.fromList(orders);
+    }
+
+    @Benchmark
+    public List<OrderVOForGetterChain> getterChain() {
+        return OrderVOForGetterChain.fromList(orders);
+    }
+
+    @Benchmark
+    public List<OrderVOForGetterChain> getterChainParallel() {
+        return OrderVOForGetterChain.fromListParallel(orders);
+    }
+
+    @Benchmark
+    public List<OrderVOForGetterChainImmutable> getterChainImmutable() {
+        return OrderVOForGetterChainImmutable.fromList(orders);
+    }
+
+    @Benchmark
+    public List<OrderVOForGetterChainMetrics> getterChainMetrics() {
+        return OrderVOForGetterChainMetrics.fromList(orders);
+    }
+}
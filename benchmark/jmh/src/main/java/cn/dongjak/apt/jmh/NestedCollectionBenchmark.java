@@ -0,0 +1,58 @@
+package cn.dongjak.apt.jmh;
+
+import cn.dongjak.apt.jmh.domain.Order;
+import cn.dongjak.apt.jmh.domain.OrderVOForGetterChainNested;
+import cn.dongjak.apt.jmh.domain.OrderVOForOptionalNested;
+import cn.dongjak.vo.mapping.MappingContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 带有{@code @UseVo}明细集合的订单列表,{@code distinctLines}大于0时订单之间共享明细
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NestedCollectionBenchmark {
+
+    @Param({"1000"})
+    private int size;
+
+    @Param({"10"})
+    private int lines;
+
+    @Param({"0", "12"})
+    private int distinctLines;
+
+    private List<Order> orders;
+
+    @Setup
+    public void setUp() {
+        orders = distinctLines > 0 ? Fixtures.ordersSharingLines(size, lines, distinctLines) : Fixtures.orders(size, lines);
+    }
+
+    @Benchmark
+    public List<OrderVOForGetterChainNested> handWritten() {
+        return HandWrittenMappers.nestedList(orders);
+    }
+
+    @Benchmark
+    public List<OrderVOForOptionalNested> optional() {
+        return OrderVOForOptionalNested.fromList(orders);
+    }
+
+    @Benchmark
+    public List<OrderVOForGetterChainNested> getterChain() {
+        return OrderVOForGetterChainNested.fromList(orders);
+    }
+
+    @Benchmark
+    public List<OrderVOForGetterChainNested> getterChainWithContext() {
+        return OrderVOForGetterChainNested.fromList(orders, new MappingContext());
+    }
+}
@@ -0,0 +1,54 @@
+package cn.dongjak.apt.jmh;
+
+import cn.dongjak.apt.jmh.domain.Order;
+import cn.dongjak.apt.jmh.domain.OrderVOForGetterChain;
+import cn.dongjak.apt.jmh.domain.OrderVOForGetterChainImmutable;
+import cn.dongjak.apt.jmh.domain.OrderVOForGetterChainMetrics;
+import cn.dongjak.apt.jmh.domain.OrderVOForOptional;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个对象的平铺字段映射
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SingleMappingBenchmark {
+
+    private Order order;
+
+    @Setup
+    public void setUp() {
+        order = Fixtures.order(42, 0);
+    }
+
+    @Benchmark
+    public OrderVOForGetterChain handWritten() {
+        return HandWrittenMappers.flat(order);
+    }
+
+    @Benchmark
+    public OrderVOForOptional optional() {
+        return OrderVOForOptional.from(order);
+    }
+
+    @Benchmark
+    public OrderVOForGetterChain getterChain() {
+        return OrderVOForGetterChain.from(order);
+    }
+
+    @Benchmark
+    public OrderVOForGetterChainImmutable getterChainImmutable() {
+        return OrderVOForGetterChainImmutable.from(order);
+    }
+
+    @Benchmark
+    public OrderVOForGetterChainMetrics getterChainMetrics() {
+        return OrderVOForGetterChainMetrics.from(order);
+    }
+}
@@ -0,0 +1,13 @@
+package cn.dongjak.apt.jmh.domain;
+
+import lombok.Data;
+
+@Data
+public class Address {
+
+    private String city;
+
+    private String street;
+
+    private int zip;
+}
@@ -0,0 +1,13 @@
+package cn.dongjak.apt.jmh.domain;
+
+import lombok.Data;
+
+@Data
+public class Customer {
+
+    private String name;
+
+    private int level;
+
+    private Address address;
+}
@@ -0,0 +1,62 @@
+package cn.dongjak.apt.jmh.domain;
+
+import cn.dongjak.annotations.vo.UseVo;
+import cn.dongjak.annotations.vo.VO;
+import cn.dongjak.annotations.vo.VOS;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 每种生成方式各有一组场景:平铺字段、经过两层关联的路径表达式、嵌套的{@code @UseVo}集合
+ * <p>
+ * 嵌套集合中的明细始终通过{@link OrderLine}的默认VO映射
+ */
+@Data
+@VOS({
+        @VO(sceneName = "Optional", excludes = {"customer", "lines"}),
+        @VO(sceneName = "GetterChain", mappingMode = VO.MappingMode.GETTER_CHAIN, parallelThreshold = 4096, excludes = {"customer", "lines"}),
+        @VO(sceneName = "GetterChainMetrics", mappingMode = VO.MappingMode.GETTER_CHAIN, metrics = true, excludes = {"customer", "lines"}),
+        @VO(sceneName = "GetterChainImmutable", mappingMode = VO.MappingMode.GETTER_CHAIN, layout = VO.Layout.IMMUTABLE, excludes = {"customer", "lines"}),
+        @VO(sceneName = "OptionalDeep", onlyIncludeDefinedFields = true, fields = {
+                @VO.Field(name = "code"),
+                @VO.Field(name = "customerName", expression = "customer.name"),
+                @VO.Field(name = "customerLevel", expression = "customer.level"),
+                @VO.Field(name = "city", expression = "customer.address.city"),
+                @VO.Field(name = "street", expression = "customer.address.street"),
+                @VO.Field(name = "zip", expression = "customer.address.zip")
+        }),
+        @VO(sceneName = "GetterChainDeep", mappingMode = VO.MappingMode.GETTER_CHAIN, onlyIncludeDefinedFields = true, fields = {
+                @VO.Field(name = "code"),
+                @VO.Field(name = "customerName", expression = "customer.name"),
+                @VO.Field(name = "customerLevel", expression = "customer.level"),
+                @VO.Field(name = "city", expression = "customer.address.city"),
+                @VO.Field(name = "street", expression = "customer.address.street"),
+                @VO.Field(name = "zip", expression = "customer.address.zip")
+        }),
+        @VO(sceneName = "OptionalNested", excludes = {"customer"}),
+        @VO(sceneName = "GetterChainNested", mappingMode = VO.MappingMode.GETTER_CHAIN, mappingContext = true, excludes = {"customer"})
+})
+public class Order {
+
+    private Long id;
+
+    private String code;
+
+    private double amount;
+
+    private int quantity;
+
+    private boolean paid;
+
+    private BigDecimal discount;
+
+    private Date createdAt;
+
+    private Customer customer;
+
+    @UseVo("cn.dongjak.apt.jmh.domain.OrderLineVO")
+    private List<OrderLine> lines;
+}
@@ -0,0 +1,15 @@
+package cn.dongjak.apt.jmh.domain;
+
+import cn.dongjak.annotations.vo.VO;
+import lombok.Data;
+
+@Data
+@VO(mappingContext = true)
+public class OrderLine {
+
+    private String product;
+
+    private double price;
+
+    private int count;
+}
@@ -25,6 +25,136 @@ public @interface VO {
      */
     boolean onlyIncludeDefinedFields() default false;
 
+    /**
+     * 生成from方法时读取字段的方式
+     *
+     * @return
+     */
+    MappingMode mappingMode() default MappingMode.OPTIONAL;
+
+    /**
+     * 列表长度达到该值时{@code fromListParallel}会在公共ForkJoinPool上并行映射,小于等于0时不生成{@code fromListParallel}
+     *
+     * @return
+     */
+    int parallelThreshold() default 0;
+
+    /**
+     * 在生成的映射方法中记录调用次数、批量映射的元素数量和采样耗时,可以通过{@code VoMetricsRegistry}读取或导出到JMX
+     *
+     * @return
+     */
+    boolean metrics() default false;
+
+    /**
+     * 生成只查询VO所需列的JPQL常量{@code PROJECTION_QUERY},以及从{@code javax.persistence.Tuple}创建VO的{@code fromTuple}和{@code fromTuples}
+     * <p>
+     * 路径表达式经过的关联使用{@code left join},嵌入对象直接使用路径;
+     * 使用{@code @UseVo}的字段、集合字段和值为实体的字段不能直接查询,不会被赋值
+     *
+     * @return
+     */
+    boolean projection() default false;
+
+    /**
+     * 生成{@code createEntityGraph(EntityManager)},返回加载VO读取的所有关联的实体图,
+     * 包括路径表达式经过的关联、{@code @UseVo}字段以及嵌套VO读取的关联
+     *
+     * @return
+     */
+    boolean entityGraph() default false;
+
+    /**
+     * 生成{@code writeJson(domain, Appendable)}和{@code writeJson(domain, OutputStream)},不创建VO直接把实体类写为和VO相同的JSON
+     * <p>
+     * 字段名称、顺序和是否输出遵循复制到VO上的{@code @JSONField},值为{@code null}的字段不输出,
+     * {@code @UseVo}字段调用对应VO的{@code writeJson},因此对应VO也需要打开该选项
+     *
+     * @return
+     */
+    boolean jsonWriter() default false;
+
+    /**
+     * 生成使用{@code MappingContext}的{@code from(domain, context)}、{@code fromList(list, context)}等方法,
+     * 同一个上下文中的同一个实体只映射一次,实体之间的循环引用在回到已经映射的实体处停止
+     * <p>
+     * {@code @UseVo}字段通过对应VO的同名方法映射,因此对应VO也需要打开该选项
+     *
+     * @return
+     */
+    boolean mappingContext() default false;
+
+    /**
+     * 生成每个字段的掩码常量、{@code parseMask}以及只映射掩码中字段的{@code from(domain, mask)}和{@code fromList(list, mask)},
+     * 没有请求的关联不会被读取;字段超过64个的VO不生成
+     *
+     * @return
+     */
+    boolean fieldMask() default false;
+
+    /**
+     * 生成比较两个VO快照的{@code diff}和只写入变化字段的{@code writeDelta},同时生成{@link #fieldMask()}的方法,字段超过64个的VO不生成
+     * <p>
+     * {@code @UseVo}字段调用对应VO的{@code writeDelta},因此对应VO也需要打开该选项
+     *
+     * @return
+     */
+    boolean delta() default false;
+
+    /**
+     * 生成二进制编解码的{@code writeTo}和{@code readFrom},数据以VO的结构哈希开头,字段变化后旧数据不能再读取
+     * <p>
+     * 字段类型必须能够编码,不能编码时编译报错;{@code @UseVo}字段调用对应VO的{@code writeBody}和{@code readBody},
+     * 因此对应VO也需要打开该选项
+     *
+     * @return
+     */
+    boolean binaryCodec() default false;
+
+    /**
+     * 大于0时{@code from}使用最多缓存该数量VO的{@code CACHE},以实体的{@code @Id}为键,{@code @Version}变化后重新映射,
+     * 实体类(包括父类)必须同时有这两个字段,复合主键只支持{@code @EmbeddedId};标识为{@code null}或0的实体尚未保存,不使用缓存
+     * <p>
+     * 缓存的VO被所有调用方共用,适合字典表、配置等很少变化的实体,必须同时使用{@link Layout#IMMUTABLE},否则编译时警告并且不使用缓存;
+     * 嵌套的{@code @UseVo}字段随实体一起缓存,关联的实体变化但该实体的版本没有变化时不会更新
+     *
+     * @return
+     */
+    int cacheSize() default 0;
+
+    /**
+     * 生成的VO类的结构
+     *
+     * @return
+     */
+    Layout layout() default Layout.BUILDER;
+
+    enum Layout {
+        /**
+         * 可变的字段,带有无参构造方法和{@code builder()},{@code from}通过builder创建VO
+         */
+        BUILDER,
+        /**
+         * 不可变的final字段和全参构造方法,没有builder,{@code from}直接调用构造方法,
+         * 每个VO只分配一个对象,生命周期很短的VO可以被JIT标量替换
+         */
+        IMMUTABLE
+    }
+
+    enum MappingMode {
+        /**
+         * 使用{@code Optional.map}链读取字段,缺省值由{@code Defaults.defaultValue}提供
+         */
+        OPTIONAL,
+        /**
+         * 使用判空的getter链读取字段,缺省值为编译期常量,基本类型不会被装箱
+         * <p>
+         * 与{@link #OPTIONAL}不同,嵌套{@code @UseVo}的值为null时VO字段也为null,而不是调用嵌套VO的from得到空VO,
+         * 这样互相引用的VO类型(例如A引用B,B又引用A)遇到null的关联时不会无限递归地创建空VO
+         */
+        GETTER_CHAIN
+    }
+
     @Target({ElementType.FIELD})
     @Retention(RetentionPolicy.SOURCE)
     public @interface Exclude {
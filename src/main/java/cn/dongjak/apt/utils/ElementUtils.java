@@ -1,22 +1,20 @@
 package cn.dongjak.apt.utils;
 
-import com.google.common.collect.Sets;
 import com.squareup.javapoet.TypeName;
 import lombok.Builder;
 import lombok.Data;
 
 import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
-import java.lang.reflect.Field;
+import javax.lang.model.type.WildcardType;
 import java.util.*;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
-import static org.reflections.ReflectionUtils.getAllFields;
-import static org.reflections.ReflectionUtils.withName;
-
 
 /**
  * <a href="https://mvnrepository.com/artifact/org.jvnet.sorcerer/sorcerer-javac">Javac Compiler</a>
@@ -24,72 +22,108 @@ import static org.reflections.ReflectionUtils.withName;
 public class ElementUtils {
     private static Logger logger = Logger.getLogger(ElementUtils.class.getName());
 
+    /**
+     * 可以通过VO的{@code from + 集合类型简单名称}批量映射的集合类型,{@link Map}只映射值,数组通过{@code fromArray}映射
+     */
+    private static final List<String> COLLECTION_CLASS_NAMES = Arrays.asList(
+            "java.util.List",
+            "java.util.Set",
+            "java.util.Collection",
+            "java.lang.Iterable",
+            "java.util.Iterator",
+            "java.util.stream.Stream",
+            "java.util.Map");
+
+    /**
+     * 数组类型在{@link TypeDesc#getCollectionType()}中的名称
+     */
+    public static final String ARRAY_COLLECTION_TYPE = "Array";
+
 
     /**
-     * 获取给定路径上的字段元素
+     * 获取给定路径上的字段元素,每次调用重新解析;处理器中应使用自己的{@link FieldResolver}
      *
      * @param typeElement 类元素
      * @param expression  字段路径表达式
      * @return 字段元素
      */
     public static Element streamingGetFieldElement(Element typeElement, String expression) {
-        Element fieldElement = typeElement;
-        String[] expressions = expression.split("\\.");
-
-        for (int i = 0; i < expressions.length; i++) {
-            String expstr = expressions[i];
-
-            Element lastTargetElement = fieldElement;
-            fieldElement = findFieldElement(fieldElement, expstr);
-
-            if (fieldElement == null)
-                throw new RuntimeException(String.format("在%s上执行路径表达式%s时发生错误,因为在%s上找不到字段%s", typeElement.getSimpleName(),
-                        expression, lastTargetElement.getSimpleName(), expstr));
-
-            if (expression.contains(".")) {
-                if (!(fieldElement instanceof TypeElement) && i < expressions.length - 1) {
-                    if (fieldElement.asType().getKind() == TypeKind.TYPEVAR) {
-                        fieldElement = typeElement;
-                    } else
-                        fieldElement = ReflectionUtils.getFieldValue(fieldElement.asType(), "tsym", TypeElement.class);
-                }
-            }
+        return new FieldResolver().getFieldElement(typeElement, expression);
+    }
 
+    /**
+     * 获取类型对应的类元素
+     *
+     * @param typeMirror 类型
+     * @return 类元素, 如果类型不是类或接口类型则返回{@code null}
+     */
+    public static TypeElement getTypeElement(TypeMirror typeMirror) {
+        if (typeMirror instanceof DeclaredType) {
+            Element element = ((DeclaredType) typeMirror).asElement();
+            if (element instanceof TypeElement) return (TypeElement) element;
         }
-        return fieldElement;
+        return null;
     }
 
-    private static Element findFieldElement(Element element, String fieldName) {
-        if (Objects.isNull(element)) return element;
-        TypeMirror elementType = element.asType();
-        List<? extends Element> tsymElements = ReflectionUtils.getFieldValue(elementType, "tsym", Element.class).getEnclosedElements();
-
-        Optional optional = tsymElements.stream().filter(o -> {
-            return o.getKind().isField() && o.getSimpleName().toString().equals(fieldName);
-        }).findFirst();
-        if (optional.isPresent()) return (Element) optional.get();
-        else return findFieldElement(getSuperClassElement(element), fieldName);
+    /**
+     * 获取类型的类名称,类或接口类型返回不带类型参数的全限定名称,其它类型返回其字面表示
+     *
+     * @param typeMirror 类型
+     * @return 类名称
+     */
+    public static String getTypeClassName(TypeMirror typeMirror) {
+        if (typeMirror.getKind() == TypeKind.WILDCARD) {
+            TypeMirror extendsBound = ((WildcardType) typeMirror).getExtendsBound();
+            return Objects.nonNull(extendsBound) ? getTypeClassName(extendsBound) : Object.class.getName();
+        }
+        TypeElement typeElement = getTypeElement(typeMirror);
+        return Objects.nonNull(typeElement) ? typeElement.getQualifiedName().toString() : typeMirror.toString();
     }
 
-    @SuppressWarnings("unchecked")
-    private static Element getSuperClassElement(Element element) {
-        if (!element.getKind().isClass())
-            throw new RuntimeException(element + " is not a class element!");
-        Optional<Field> superFieldOptional = getAllFields(element.asType().getClass(), withName("supertype_field")).stream().findFirst();
-        if (superFieldOptional.isPresent()) {
-            try {
-                Object superType = superFieldOptional.get().get(element.asType());
-                return (Element) superType.getClass().getField("tsym").get(superType);
-            } catch (IllegalAccessException | NoSuchFieldException e) {
-                e.printStackTrace();
-            }
-        }
-        return null;
+    /**
+     * 获取类型上按名称索引的所有字段,包括从父类继承的字段,子类中声明的字段优先
+     *
+     * @param typeElement 类元素
+     * @return 字段名称到字段元素的映射
+     * @see FieldResolver#getFieldIndex(Element)
+     */
+    public static Map<String, Element> getFieldIndex(Element typeElement) {
+        return new FieldResolver().getFieldIndex(typeElement);
     }
 
 
     public static String getReadMethodName(Element element) {
-        return "get" + element.getSimpleName().toString().substring(0, 1).toUpperCase() + element.getSimpleName().toString().substring(1);
+        String prefix = element.asType().getKind() == TypeKind.BOOLEAN ? "is" : "get";
+        return prefix + element.getSimpleName().toString().substring(0, 1).toUpperCase() + element.getSimpleName().toString().substring(1);
+    }
+
+    /**
+     * 获取类型的缺省值字面量,基本类型返回对应的零值,其它类型返回{@code null}
+     *
+     * @param typeMirror 类型
+     * @return 可以直接写入源码的缺省值
+     */
+    public static String getDefaultValueLiteral(TypeMirror typeMirror) {
+        switch (typeMirror.getKind()) {
+            case BOOLEAN:
+                return "false";
+            case BYTE:
+                return "(byte) 0";
+            case SHORT:
+                return "(short) 0";
+            case INT:
+                return "0";
+            case LONG:
+                return "0L";
+            case CHAR:
+                return "'\\0'";
+            case FLOAT:
+                return "0F";
+            case DOUBLE:
+                return "0D";
+            default:
+                return "null";
+        }
     }
 
 
@@ -121,11 +155,21 @@ public class ElementUtils {
     }*/
     @SuppressWarnings("all")
     public static TypeDesc getElementTypeDesc(Element element) {
-        String className = ReflectionUtils.getFieldValue(element.asType(), "tsym", Element.class).toString();
+        if (element.asType().getKind() == TypeKind.ARRAY) {
+            String componentClassName = getTypeClassName(((ArrayType) element.asType()).getComponentType());
+            return TypeDesc.builder()
+                    .className(componentClassName)
+                    .isCollection(true)
+                    .isArray(true)
+                    .collectionType(ARRAY_COLLECTION_TYPE)
+                    .typeParams(Collections.singletonList(componentClassName))
+                    .build();
+        }
+        String className = getTypeClassName(element.asType());
         boolean isCollection;
         return TypeDesc.builder()
                 .className(className)
-                .isCollection(isCollection = Arrays.asList("java.util.List").contains(className))
+                .isCollection(isCollection = COLLECTION_CLASS_NAMES.contains(className))
                 .collectionType(isCollection ? ReflectionUtils.getClassSimpleName(className) : null)
                 .typeParams(mapElementTypeParamsToString(element))
                 .build();
@@ -133,24 +177,26 @@ public class ElementUtils {
 
 
     @SuppressWarnings("all")
-    private static Set<String> mapElementTypeParamsToString(Element element) {
-        List typarams = ReflectionUtils.getFieldValue(element.asType(), "typarams_field", List.class);
-        return Objects.nonNull(typarams) ? (Set<String>) typarams.stream().map(o -> {
-            return ReflectionUtils.getFieldValue(o, "tsym", Element.class).toString();
-        }).collect(Collectors.toSet()) : Sets.newHashSet();
+    private static List<String> mapElementTypeParamsToString(Element element) {
+        if (element.asType().getKind() != TypeKind.DECLARED) return new ArrayList<>();
+        return ((DeclaredType) element.asType()).getTypeArguments().stream()
+                .map(ElementUtils::getTypeClassName)
+                .collect(Collectors.toList());
     }
 
-    /*public static boolean fieldElementTypeIsCollection(Element fieldElement) {
-        String className = ReflectionUtils.getFieldValue(fieldElement.asType(), "tsym", Element.class).toString();
-        return Arrays.asList("java.util.List").contains(className);
-    }*/
-
     @Data
     @Builder
     public static class TypeDesc {
+        /**
+         * 类名称,数组为元素的类名称
+         */
         String className;
         boolean isCollection;
+        boolean isArray;
         String collectionType;
-        Set<String> typeParams;
+        /**
+         * 按声明顺序排列的类型参数,数组为元素的类名称
+         */
+        List<String> typeParams;
     }
 }
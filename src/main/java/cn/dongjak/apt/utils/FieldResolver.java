@@ -0,0 +1,85 @@
+package cn.dongjak.apt.utils;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 在类型元素上查找字段和执行路径表达式,每个类型的字段索引只建立一次,
+ * 路径表达式按点号前缀逐段解析,{@code a.b.c}会复用{@code a}和{@code a.b}的结果
+ * <p>
+ * 缓存以javac的元素为键,只在一次编译中有效:由处理器在{@code init}中创建,随处理器一起释放,
+ * 不能在多次编译或多个处理器实例之间共用。只在处理器线程上使用,不是线程安全的
+ */
+public class FieldResolver {
+
+    /**
+     * 类型元素到其字段(包括继承的字段)的索引
+     */
+    private final Map<Element, Map<String, Element>> fieldIndexes = new HashMap<>();
+
+    /**
+     * 根元素上已经解析过的路径表达式及其前缀
+     */
+    private final Map<Element, Map<String, Element>> fieldPaths = new HashMap<>();
+
+    /**
+     * 获取给定路径上的字段元素
+     *
+     * @param typeElement 类元素
+     * @param expression  字段路径表达式
+     * @return 字段元素
+     */
+    public Element getFieldElement(Element typeElement, String expression) {
+        Map<String, Element> paths = fieldPaths.computeIfAbsent(typeElement, o -> new HashMap<>());
+        Element fieldElement = paths.get(expression);
+        if (Objects.nonNull(fieldElement)) return fieldElement;
+
+        int end = expression.lastIndexOf('.');
+        Element ownerElement;
+        if (end < 0)
+            ownerElement = typeElement instanceof TypeElement ? typeElement : ElementUtils.getTypeElement(typeElement.asType());
+        else {
+            Element prefixElement = getFieldElement(typeElement, expression.substring(0, end));
+            //类型变量(例如父类中的T)按根元素处理
+            ownerElement = prefixElement.asType().getKind() == TypeKind.TYPEVAR ? typeElement : ElementUtils.getTypeElement(prefixElement.asType());
+        }
+        String name = expression.substring(end + 1);
+        fieldElement = Objects.isNull(ownerElement) ? null : getFieldIndex(ownerElement).get(name);
+        if (Objects.isNull(fieldElement))
+            throw new RuntimeException(String.format("在%s上执行路径表达式%s时发生错误,因为在%s上找不到字段%s", typeElement.getSimpleName(),
+                    expression, Objects.isNull(ownerElement) ? expression.substring(0, end) : ownerElement.getSimpleName(), name));
+        paths.put(expression, fieldElement);
+        return fieldElement;
+    }
+
+    /**
+     * 获取类型上按名称索引的所有字段,包括从父类继承的字段,子类中声明的字段优先
+     *
+     * @param typeElement 类元素
+     * @return 字段名称到字段元素的映射
+     */
+    public Map<String, Element> getFieldIndex(Element typeElement) {
+        Map<String, Element> fieldIndex = fieldIndexes.get(typeElement);
+        if (Objects.nonNull(fieldIndex)) return fieldIndex;
+
+        fieldIndex = new LinkedHashMap<>();
+        for (Element enclosedElement : typeElement.getEnclosedElements()) {
+            if (enclosedElement.getKind().isField())
+                fieldIndex.putIfAbsent(enclosedElement.getSimpleName().toString(), enclosedElement);
+        }
+        if (typeElement.getKind().isClass()) {
+            Element superClassElement = ElementUtils.getTypeElement(((TypeElement) typeElement).getSuperclass());
+            if (Objects.nonNull(superClassElement))
+                getFieldIndex(superClassElement).forEach(fieldIndex::putIfAbsent);
+        }
+        fieldIndex = Collections.unmodifiableMap(fieldIndex);
+        fieldIndexes.put(typeElement, fieldIndex);
+        return fieldIndex;
+    }
+}
@@ -0,0 +1,107 @@
+package cn.dongjak.apt.vo;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * 记录每个VO的解析、生成和写入耗时以及生成的成员数量,汇总后输出到Messager和JSON报告
+ */
+class ProcessingReport {
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    public Entry add(VoModel voModel, int round, long resolveNanos) {
+        Entry entry = new Entry();
+        entry.setEntity(voModel.getDomainClass().toString());
+        entry.setScene(voModel.getSceneName());
+        entry.setClassName(voModel.getVoClass().toString());
+        entry.setRound(round);
+        entry.setFields(voModel.getFields().size());
+        entry.setResolvedPaths(voModel.getFields().stream().mapToInt(field -> field.getPath().size()).sum());
+        entry.setResolveNanos(resolveNanos);
+        entries.add(entry);
+        return entry;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * 所有VO的总耗时,以及按实体类汇总后最慢的几个实体类
+     *
+     * @param top 列出的实体类数量
+     * @return 摘要
+     */
+    public String summary(int top) {
+        long resolveNanos = entries.stream().mapToLong(Entry::getResolveNanos).sum();
+        long buildNanos = entries.stream().mapToLong(Entry::getBuildNanos).sum();
+        long writeNanos = entries.stream().mapToLong(Entry::getWriteNanos).sum();
+        StringBuilder builder = new StringBuilder(String.format(Locale.ROOT,
+                "生成%d个VO,解析%.1fms,生成%.1fms,写入%.1fms,解析路径%d个,生成成员%d个",
+                entries.size(), resolveNanos / 1e6, buildNanos / 1e6, writeNanos / 1e6,
+                entries.stream().mapToInt(Entry::getResolvedPaths).sum(),
+                entries.stream().mapToInt(Entry::getMembers).sum()));
+        entries.stream()
+                .collect(Collectors.groupingBy(Entry::getEntity, Collectors.summingLong(Entry::getTotalNanos)))
+                .entrySet().stream()
+                .sorted(Comparator.comparing(o -> -o.getValue()))
+                .limit(top)
+                .forEach(o -> builder.append(String.format(Locale.ROOT, "\n  %s: %.1fms", o.getKey(), o.getValue() / 1e6)));
+        return builder.toString();
+    }
+
+    public String toJson() {
+        StringBuilder builder = new StringBuilder("{\n  \"vos\": [");
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            builder.append(i == 0 ? "\n" : ",\n")
+                    .append("    {\"entity\": ").append(quote(entry.getEntity()))
+                    .append(", \"scene\": ").append(quote(entry.getScene()))
+                    .append(", \"className\": ").append(quote(entry.getClassName()))
+                    .append(", \"round\": ").append(entry.getRound())
+                    .append(", \"fields\": ").append(entry.getFields())
+                    .append(", \"resolvedPaths\": ").append(entry.getResolvedPaths())
+                    .append(", \"members\": ").append(entry.getMembers())
+                    .append(", \"resolveNanos\": ").append(entry.getResolveNanos())
+                    .append(", \"buildNanos\": ").append(entry.getBuildNanos())
+                    .append(", \"writeNanos\": ").append(entry.getWriteNanos())
+                    .append("}");
+        }
+        return builder.append("\n  ]\n}\n").toString();
+    }
+
+    private static String quote(String value) {
+        if (value == null) return "null";
+        StringBuilder builder = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') builder.append('\\').append(c);
+            else if (c < 0x20) builder.append(String.format("\\u%04x", (int) c));
+            else builder.append(c);
+        }
+        return builder.append('"').toString();
+    }
+
+    @Data
+    static class Entry {
+        private String entity;
+        private String scene;
+        private String className;
+        private int round;
+        private int fields;
+        private int resolvedPaths;
+        private int members;
+        private long resolveNanos;
+        private long buildNanos;
+        private long writeNanos;
+
+        public long getTotalNanos() {
+            return resolveNanos + buildNanos + writeNanos;
+        }
+    }
+}
@@ -5,7 +5,16 @@ import cn.dongjak.annotations.vo.UseVo;
 import cn.dongjak.annotations.vo.VO;
 import cn.dongjak.annotations.vo.VOS;
 import cn.dongjak.apt.utils.ElementUtils;
+import cn.dongjak.apt.utils.FieldResolver;
 import cn.dongjak.apt.utils.ReflectionUtils;
+import cn.dongjak.vo.cache.VoCache;
+import cn.dongjak.vo.codec.BinaryCodecs;
+import cn.dongjak.vo.codec.SchemaMismatchException;
+import cn.dongjak.vo.json.JsonWriters;
+import cn.dongjak.vo.json.Utf8Output;
+import cn.dongjak.vo.mapping.MappingContext;
+import cn.dongjak.vo.metrics.VoMetrics;
+import cn.dongjak.vo.metrics.VoMetricsRegistry;
 import com.google.auto.service.AutoService;
 import com.google.common.collect.Sets;
 import com.squareup.javapoet.*;
@@ -18,28 +27,161 @@ import org.apache.commons.lang3.StringUtils;
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.Filer;
 import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
 import javax.annotation.processing.RoundEnvironment;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
 import javax.persistence.*;
 import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * 每一个注解处理器类都必须有一个空的构造函数，默认不写就行;
+ * <p>
+ * 在Gradle中注册为动态(dynamic)增量处理器:通常为隔离型(isolating),每个生成的VO只以它所在的实体类作为源元素,
+ * 实体类(以及它通过字段类型、父类引用的类型)没有变化时不会重新生成VO;
+ * 打开{@value #MAPPERS_OPTION}或{@value #REPORT_OPTION}时为聚合型(aggregating),这两个文件汇总了所有实体类
  */
-@AutoService(VOAnnotationProcessor.class)
+@AutoService(Processor.class)
 public class VOAnnotationProcessor extends AbstractProcessor {
 
     private static Logger logger = Logger.getLogger(VOAnnotationProcessor.class.getName());
+
+    private static final String METRICS_FIELD = "METRICS";
+
+    private static final String CACHE_FIELD = "CACHE";
+
+    private static final String PROJECTION_ROOT_ALIAS = "e";
+
+    /**
+     * 字段掩码用一个long表示,字段更多的VO不生成掩码方法
+     */
+    private static final int MAX_MASK_FIELDS = Long.SIZE;
+
+    private static final String JSON_FIELD_ANNOTATION = "com.alibaba.fastjson.annotation.JSONField";
+
+    /**
+     * 编解码方法可以编码的值的类型,{@link Date}的子类只支持{@code java.sql}中的三种
+     */
+    private static final Set<String> CODEC_VALUE_TYPES = Stream.of(Boolean.class, Byte.class, Short.class, Integer.class, Long.class,
+            Float.class, Double.class, Character.class, String.class, BigDecimal.class, BigInteger.class, LocalDate.class,
+            LocalDateTime.class, Instant.class, Date.class, java.sql.Date.class, java.sql.Time.class, java.sql.Timestamp.class)
+            .map(Class::getName).collect(Collectors.toSet());
+
+    /**
+     * 可以编码的数组类型,其它数组不能编码
+     */
+    private static final Set<String> CODEC_ARRAY_TYPES = Sets.newHashSet("byte[]", "int[]", "long[]", "double[]", "java.lang.String[]");
+
+    /**
+     * 可以编码的集合类型,读取时创建的{@link ArrayList}和{@link LinkedHashSet}可以赋给这些类型
+     */
+    private static final Set<String> CODEC_COLLECTION_TYPES = Stream.of(Collection.class, List.class, Set.class,
+            ArrayList.class, HashSet.class, LinkedHashSet.class).map(Class::getName).collect(Collectors.toSet());
+
+    private static final Set<String> CODEC_MAP_TYPES = Stream.of(Map.class, HashMap.class, LinkedHashMap.class)
+            .map(Class::getName).collect(Collectors.toSet());
+
+    /**
+     * 生成的方法中参数和辅助变量的名称,路径局部变量不能使用
+     */
+    private static final Set<String> RESERVED_VARIABLES = new HashSet<>(Arrays.asList("domain", "out", "separator", "writer", "batch", "row", "collection", "vo", "context", "mask"));
+
+    /**
+     * 为{@code true}时在工作线程池上同时生成VO源码,例如{@code -Adongjak.vo.parallel=true}
+     */
+    public static final String PARALLEL_OPTION = "dongjak.vo.parallel";
+
+    /**
+     * 为{@code true}时在处理结束后写入JSON格式的处理报告,例如{@code -Adongjak.vo.report=true}
+     * <p>
+     * 报告汇总了所有实体类,打开时处理器在Gradle中为聚合型增量处理器
+     */
+    public static final String REPORT_OPTION = "dongjak.vo.report";
+
+    public static final String REPORT_RESOURCE = "META-INF/dongjak-apt/vo-report.json";
+
+    /**
+     * 为{@code true}时所有VO都记录映射统计,相当于每个{@code @VO}都设置了{@code metrics = true}
+     */
+    public static final String METRICS_OPTION = "dongjak.vo.metrics";
+
+    /**
+     * 设置为false时不写入VO索引
+     */
+    public static final String INDEX_OPTION = "dongjak.vo.index";
+
+    /**
+     * 生成{@code VoMappers}的包名,例如{@code -Adongjak.vo.mappers=com.example.vo},没有设置时不生成
+     * <p>
+     * {@code VoMappers}汇总了所有实体类,打开时处理器在Gradle中为聚合型增量处理器
+     */
+    public static final String MAPPERS_OPTION = "dongjak.vo.mappers";
+
+    private static final String GRADLE_ISOLATING = "org.gradle.annotation.processing.isolating";
+
+    private static final String GRADLE_AGGREGATING = "org.gradle.annotation.processing.aggregating";
+
     private Filer _filer;
 
+    /**
+     * 本次编译使用的字段索引和路径缓存,随处理器实例一起释放
+     */
+    private FieldResolver fieldResolver;
+    private final ProcessingReport report = new ProcessingReport();
+    private int round;
+
+    /**
+     * 本次编译中已经生成的VO,以VO类全限定名为键
+     */
+    private final Map<String, VoModel> generatedVos = new HashMap<>();
+
+    /**
+     * 本次编译的源码中的类型,这些类型的索引可能是上次编译留下的,不能使用
+     */
+    private final Set<String> sourceTypeNames = new HashSet<>();
+
+    /**
+     * 从类路径读取的实体类索引,没有索引的实体类对应空值
+     */
+    private final Map<String, Optional<List<VoIndex.Entry>>> indexCache = new HashMap<>();
+
+    /**
+     * 等待写入{@code VoMappers}的VO,所有VO生成之后的下一轮写入
+     */
+    private final List<VoModel> mapperModels = new ArrayList<>();
+
+    private boolean mappersWritten;
+
     /**
      * init()方法会被注解处理工具调用，并输入ProcessingEnviroment参数。
      * ProcessingEnviroment提供很多有用的工具类Elements, Types 和 Filer
@@ -50,6 +192,7 @@ public class VOAnnotationProcessor extends AbstractProcessor {
     public synchronized void init(ProcessingEnvironment processingEnvironment) {
         super.init(processingEnvironment);
         _filer = processingEnvironment.getFiler();
+        fieldResolver = new FieldResolver();
         //messager = processingEnvironment.getMessager();
         // elements = processingEnvironment.getElementUtils();
         // activitiesWithPackage = new HashMap<>();
@@ -68,33 +211,130 @@ public class VOAnnotationProcessor extends AbstractProcessor {
     @Override
     public boolean process(Set<? extends TypeElement> annotations,
                            RoundEnvironment roundEnv) {
-        try {
-            for (TypeElement typeElement : annotations) {
-                for (Element element : roundEnv.getElementsAnnotatedWith(typeElement)) {
-                    VO voAnnotation = element.getAnnotation(VO.class);
-                    if (Objects.nonNull(voAnnotation))
-                        createSingleVo(element, voAnnotation);
-                    VOS vosAnnotation = element.getAnnotation(VOS.class);
-                    if (Objects.nonNull(vosAnnotation))
-                        createMultiVo(element, vosAnnotation);
-                }
+        round++;
+        for (Element rootElement : roundEnv.getRootElements())
+            if (rootElement instanceof TypeElement)
+                sourceTypeNames.add(((TypeElement) rootElement).getQualifiedName().toString());
+        Set<Element> elements = new LinkedHashSet<>();
+        for (TypeElement typeElement : annotations)
+            elements.addAll(roundEnv.getElementsAnnotatedWith(typeElement));
+
+        //在处理器线程上解析所有元素,之后生成源码时不再访问元素
+        List<VoModel> voModels = new ArrayList<>();
+        List<ProcessingReport.Entry> entries = new ArrayList<>();
+        for (Element element : elements) {
+            for (VO vo : getVoAnnotations(element)) {
+                long start = System.nanoTime();
+                VoModel voModel = resolveVo(element, vo);
+                voModels.add(voModel);
+                entries.add(report.add(voModel, round, System.nanoTime() - start));
             }
-            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "クラスファイル生成");
-            return true;
-        } catch (IOException ex) {
-            ex.printStackTrace();
         }
-        return false;
-    }
+        voModels.forEach(o -> generatedVos.put(o.getVoClass().toString(), o));
+        voModels.forEach(this::checkUseVo);
+
+        List<JavaFile> javaFiles = Boolean.parseBoolean(processingEnv.getOptions().get(PARALLEL_OPTION)) ?
+                buildVosConcurrently(voModels, entries) :
+                buildVos(voModels, entries);
 
-    private void createMultiVo(Element element, VOS vosAnnotation) {
-        for (VO vo : vosAnnotation.value()) {
+        //Filer不是线程安全的,只在处理器线程上按解析顺序写入
+        for (int i = 0; i < javaFiles.size(); i++) {
+            VoModel voModel = voModels.get(i);
+            long start = System.nanoTime();
             try {
-                createSingleVo(element, vo);
+                javaFiles.get(i).writeTo(_filer);
             } catch (IOException e) {
-                System.err.println("");
-                logger.severe(String.format("创建应用于场景[%s]的VO失败!", vo.sceneName()));
+                logger.severe(String.format("创建应用于场景[%s]的VO失败!", voModel.getSceneName()));
+            }
+            entries.get(i).setWriteNanos(System.nanoTime() - start);
+        }
+        if (!"false".equals(processingEnv.getOptions().get(INDEX_OPTION)))
+            writeIndex(voModels);
+        if (StringUtils.isNotBlank(processingEnv.getOptions().get(MAPPERS_OPTION))) {
+            mapperModels.addAll(voModels);
+            if ((voModels.isEmpty() || roundEnv.processingOver()) && !mapperModels.isEmpty() && !mappersWritten)
+                writeMappers(processingEnv.getOptions().get(MAPPERS_OPTION));
+        }
+
+        if (roundEnv.processingOver() && !report.getEntries().isEmpty()) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, report.summary(10));
+            if (Boolean.parseBoolean(processingEnv.getOptions().get(REPORT_OPTION)))
+                writeReport();
+        }
+        return true;
+    }
+
+    private List<JavaFile> buildVos(List<VoModel> voModels, List<ProcessingReport.Entry> entries) {
+        List<JavaFile> javaFiles = new ArrayList<>(voModels.size());
+        for (int i = 0; i < voModels.size(); i++)
+            javaFiles.add(timedBuildVo(voModels.get(i), entries.get(i)));
+        return javaFiles;
+    }
+
+    /**
+     * 在工作线程池上同时生成多个VO的源码,结果的顺序和输入一致
+     *
+     * @param voModels 已经解析的VO数据
+     * @param entries  与VO数据一一对应的报告条目
+     * @return 生成的源码文件
+     */
+    private List<JavaFile> buildVosConcurrently(List<VoModel> voModels, List<ProcessingReport.Entry> entries) {
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            List<Callable<JavaFile>> tasks = new ArrayList<>(voModels.size());
+            for (int i = 0; i < voModels.size(); i++) {
+                VoModel voModel = voModels.get(i);
+                ProcessingReport.Entry entry = entries.get(i);
+                tasks.add(() -> timedBuildVo(voModel, entry));
             }
+            List<Future<JavaFile>> futures = executor.invokeAll(tasks);
+            List<JavaFile> javaFiles = new ArrayList<>(futures.size());
+            for (Future<JavaFile> future : futures)
+                javaFiles.add(future.get());
+            return javaFiles;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private JavaFile timedBuildVo(VoModel voModel, ProcessingReport.Entry entry) {
+        long start = System.nanoTime();
+        JavaFile javaFile = buildVo(voModel);
+        entry.setBuildNanos(System.nanoTime() - start);
+        entry.setMembers(javaFile.typeSpec.fieldSpecs.size() + javaFile.typeSpec.methodSpecs.size());
+        return javaFile;
+    }
+
+    /**
+     * 写入{@code VoMappers}
+     *
+     * @param packageName 包名
+     */
+    private void writeMappers(String packageName) {
+        mappersWritten = true;
+        try {
+            VoMappersBuilder.build(packageName, mapperModels).writeTo(_filer);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "写入VoMappers失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 把处理报告以JSON格式写入{@link StandardLocation#CLASS_OUTPUT}下的{@value #REPORT_RESOURCE}
+     */
+    private void writeReport() {
+        Element[] originatingElements = generatedVos.values().stream().map(VoModel::getElement).distinct().toArray(Element[]::new);
+        try (Writer writer = _filer.createResource(StandardLocation.CLASS_OUTPUT, "", REPORT_RESOURCE, originatingElements).openWriter()) {
+            writer.write(report.toJson());
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "写入处理报告失败: " + e.getMessage());
         }
     }
 
@@ -125,160 +365,1771 @@ public class VOAnnotationProcessor extends AbstractProcessor {
     }
 
 
-    private String stringFirstUpper(String string) {
-        return string.substring(0, 1).toUpperCase() + string.substring(1);
+    /**
+     * 获取实体类上声明的所有VO注解,包括{@code @VOS}中的
+     *
+     * @param element 实体类元素
+     * @return VO注解
+     */
+    private List<VO> getVoAnnotations(Element element) {
+        List<VO> vos = new ArrayList<>();
+        VO voAnnotation = element.getAnnotation(VO.class);
+        if (Objects.nonNull(voAnnotation))
+            vos.add(voAnnotation);
+        VOS vosAnnotation = element.getAnnotation(VOS.class);
+        if (Objects.nonNull(vosAnnotation))
+            vos.addAll(Arrays.asList(vosAnnotation.value()));
+        return vos;
     }
 
-    private void createSingleVo(Element element, VO vo) throws IOException {
-        String className = element.getSimpleName() + "VO";  //类名称
+    private String getVoClassName(Element element, VO vo) {
         if (vo.usedExtjsGrid())
-            className = element.getSimpleName() + "VOForExtjsGrid";
+            return element.getSimpleName() + "VOForExtjsGrid";
         else if (StringUtils.isNotBlank(vo.sceneName()))
-            className = element.getSimpleName() + "VOFor" + vo.sceneName();  //显示指定VO类名称
+            return element.getSimpleName() + "VOFor" + vo.sceneName();  //显示指定VO类名称
+        return element.getSimpleName() + "VO";
+    }
 
-        //创建类型声明
-        TypeSpec.Builder voBuilder = TypeSpec.classBuilder(className);
+    private String getVoPackageName(Element element, VO vo) {
+        return StringUtils.isNotBlank(vo.packageName()) ? vo.packageName() : element.getEnclosingElement().toString();
+    }
 
-        /*
-        添加类注释
-         */
-        voBuilder.addAnnotation(Data.class);
-        voBuilder.addAnnotation(NoArgsConstructor.class);
-        voBuilder.addAnnotation(AllArgsConstructor.class);
-        voBuilder.addAnnotation(Builder.class);
+    /**
+     * 解析生成一个VO所需要的全部数据
+     *
+     * @param element 实体类元素
+     * @param vo      VO注解
+     * @return VO数据
+     */
+    private VoModel resolveVo(Element element, VO vo) {
+        String className = getVoClassName(element, vo);  //类名称
 
         DbComment dbComment = element.getAnnotation(DbComment.class);
-        if (Objects.nonNull(dbComment))
-            voBuilder.addAnnotation(AnnotationSpec.builder(ApiModel.class).addMember("value", "$S", dbComment.value()).build());
+        AnnotationSpec apiModel = Objects.nonNull(dbComment) ?
+                AnnotationSpec.builder(ApiModel.class).addMember("value", "$S", dbComment.value()).build() : null;
+
+        Set<FieldItem> fieldItems = getFieldItems(element, vo);
+        ClassName domainClass = ClassName.bestGuess(element.asType().toString());
+        List<VoModel.FieldModel> fields = new ArrayList<>();
+        List<String> unprojectableFields = new ArrayList<>();
+        List<String> unencodableFields = new ArrayList<>();
+        fieldItems.forEach(voField -> {
+            String expression = StringUtils.isNotBlank(voField.getExpression()) ? voField.getExpression() : voField.getName();
+            Element fieldElement = fieldResolver.getFieldElement(element, expression);
+            TypeName typeName;
+            ElementUtils.TypeDesc typeDesc = ElementUtils.getElementTypeDesc(fieldElement);
+            UseVo useVoAnnotation = fieldElement.getAnnotation(UseVo.class);
+            if (typeDesc.isArray()) { //数组,元素可能是基本类型
+                typeName = Objects.isNull(useVoAnnotation) ? TypeName.get(fieldElement.asType()) :
+                        ArrayTypeName.of(ClassName.bestGuess(useVoAnnotation.value()));
+            } else if (typeDesc.isCollection()) { //该字段是一个集合类型
+                List<TypeName> typeArguments = typeDesc.getTypeParams().stream().map(ClassName::bestGuess).collect(Collectors.toList());
+                if (Objects.nonNull(useVoAnnotation)) //使用VO替换元素类型,Map替换值的类型
+                    typeArguments.set(typeArguments.size() - 1, ClassName.bestGuess(useVoAnnotation.value()));
+                typeName = ParameterizedTypeName.get(ClassName.bestGuess(typeDesc.getClassName()), typeArguments.toArray(new TypeName[]{}));
+            } else if (Objects.nonNull(useVoAnnotation)) {
+                typeName = ClassName.bestGuess(useVoAnnotation.value());
+            } else if (fieldElement.asType().getKind().isPrimitive()) {
+                typeName = TypeName.get(fieldElement.asType());
+            } else
+                typeName = ClassName.bestGuess(fieldElement.asType().toString());
+            FieldSpec.Builder fieldSpecBuilder = FieldSpec.builder(typeName, voField.getName(), Modifier.PRIVATE);
+            addFieldDoc(fieldElement, fieldSpecBuilder);
+            Map<String, Object> jsonField = Collections.emptyMap();
+            if (voField.extendFastJsonAnnotation) {
+                setFastJson(fieldElement, fieldSpecBuilder);
+                jsonField = getJsonFieldValues(fieldElement);
+            }
+
+            //值为实体的字段会被查询为整个实体并隐式内连接,和@UseVo字段、集合字段一样不查询
+            boolean projectable = Objects.isNull(useVoAnnotation) && !typeDesc.isCollection() && !isAssociation(fieldElement);
+            fields.add(VoModel.FieldModel.builder()
+                    .fieldSpec(fieldSpecBuilder.build())
+                    .expression(expression)
+                    .collection(typeDesc.isCollection())
+                    .collectionType(typeDesc.getCollectionType())
+                    .useVo(Objects.nonNull(useVoAnnotation) ? useVoAnnotation.value() : null)
+                    .useVoEntity(Objects.nonNull(useVoAnnotation) ? Optional.ofNullable(getNestedEntity(fieldElement))
+                            .map(o -> o.getQualifiedName().toString()).orElse(null) : null)
+                    .path(resolvePath(element, domainClass, expression))
+                    .projectable(projectable)
+                    .enumType(Optional.ofNullable(ElementUtils.getTypeElement(fieldElement.asType()))
+                            .map(o -> o.getKind() == ElementKind.ENUM).orElse(false))
+                    .jsonName(StringUtils.defaultIfBlank((String) jsonField.get("name"), voField.getName()))
+                    .jsonOrdinal((Integer) jsonField.getOrDefault("ordinal", 0))
+                    .jsonFormat(StringUtils.defaultIfBlank((String) jsonField.get("format"), null))
+                    .jsonSerialize((Boolean) jsonField.getOrDefault("serialize", true))
+                    .build());
+            if (!projectable)
+                unprojectableFields.add(voField.getName());
+            if (vo.binaryCodec() && !isEncodableField(fieldElement.asType(), Objects.nonNull(useVoAnnotation)))
+                unencodableFields.add(voField.getName() + "(" + fieldElement.asType() + ")");
+        });
+        //缓存需要不可变的VO,以及实体类上单独的@Id(或@EmbeddedId)和@Version
+        Element idField = null, versionField = null;
+        if (vo.cacheSize() > 0) {
+            int idCount = 0;
+            for (Element fieldElement : fieldResolver.getFieldIndex(element).values()) {
+                if (Objects.nonNull(fieldElement.getAnnotation(Id.class)) || Objects.nonNull(fieldElement.getAnnotation(EmbeddedId.class))) {
+                    idField = fieldElement;
+                    idCount++;
+                } else if (Objects.nonNull(fieldElement.getAnnotation(Version.class)))
+                    versionField = fieldElement;
+            }
+            String problem = null;
+            if (vo.layout() != VO.Layout.IMMUTABLE)
+                problem = "VO没有使用Layout.IMMUTABLE,缓存的VO被所有调用方共用,不能是可变的";
+            else if (Objects.isNull(idField) || Objects.isNull(versionField))
+                problem = String.format("%s没有同时声明@Id和@Version字段", element.getSimpleName());
+            else if (idCount > 1 || hasIdClass(element))
+                problem = String.format("%s使用多个@Id或@IdClass组成的复合主键,请改用@EmbeddedId", element.getSimpleName());
+            if (Objects.nonNull(problem)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, String.format("%s不使用缓存: %s", className, problem), element);
+                idField = null;
+            }
+        }
+        boolean cached = Objects.nonNull(idField) && Objects.nonNull(versionField);
+
+        //diff和writeDelta使用字段掩码常量,打开delta时同时生成掩码方法
+        boolean fieldMask = vo.fieldMask() || vo.delta();
+        boolean masked = fields.size() <= MAX_MASK_FIELDS;
+        if (fieldMask && !masked)
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    String.format("%s有%d个字段,超过%d个,不生成字段掩码方法%s", className, fields.size(), MAX_MASK_FIELDS,
+                            vo.delta() ? "以及diff和writeDelta" : ""), element);
 
+        if (!unencodableFields.isEmpty())
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    String.format("%s的字段%s不能二进制编码,请排除这些字段或关闭binaryCodec", className, unencodableFields), element);
 
-        Set<FieldItem> fieldItems = Sets.newHashSet();
+        if (vo.projection() && !unprojectableFields.isEmpty())
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    String.format("%s的投影查询不包含字段%s,通过fromTuple创建的VO中这些字段为空", className, unprojectableFields), element);
+
+        return VoModel.builder()
+                .element(element)
+                .packageName(getVoPackageName(element, vo))
+                .className(className)
+                .sceneName(vo.sceneName())
+                .domainClass(domainClass)
+                .apiModel(apiModel)
+                .mappingMode(vo.mappingMode())
+                .layout(vo.layout())
+                .usedExtjsGrid(vo.usedExtjsGrid())
+                .parallelThreshold(vo.parallelThreshold())
+                .metrics(vo.metrics() || Boolean.parseBoolean(processingEnv.getOptions().get(METRICS_OPTION)))
+                .projection(vo.projection())
+                .entityName(getEntityName(element))
+                .fetchGraph(vo.entityGraph() ? resolveFetchGraph(element, vo, new HashSet<>()) : null)
+                .jsonWriter(vo.jsonWriter())
+                .mappingContext(vo.mappingContext())
+                .fieldMask(fieldMask && masked)
+                .delta(vo.delta() && masked)
+                .binaryCodec(vo.binaryCodec())
+                .cacheSize(cached ? vo.cacheSize() : 0)
+                .cacheId(cached ? resolvePath(element, domainClass, idField.getSimpleName().toString()).get(0) : null)
+                .cacheVersion(cached ? resolvePath(element, domainClass, versionField.getSimpleName().toString()).get(0) : null)
+                .fields(fields)
+                .build();
+    }
+
+    /**
+     * 获取VO包含的字段,包括{@code fields}中声明的和实体类上没有被排除的
+     * <p>
+     * 字段按实体类中的声明顺序排列,之后是只在{@code fields}中声明的字段,每次编译生成的源码完全相同;
+     * 同名字段以{@code fields}中的声明为准,位置不变
+     *
+     * @param element 实体类元素
+     * @param vo      VO注解
+     * @return 字段
+     */
+    private Set<FieldItem> getFieldItems(Element element, VO vo) {
+        Map<String, FieldItem> fieldItems = new LinkedHashMap<>();
         if (vo.usedExtjsGrid()) {
-            fieldItems.addAll(Arrays.stream(vo.fields()).map(FieldItem::formField).collect(Collectors.toSet()));
-            fieldItems.addAll(element.getEnclosedElements().stream().filter(o -> {
+            element.getEnclosedElements().stream().filter(o -> {
                 return o.getKind().isField()
                         && Objects.isNull(o.getAnnotation(OneToMany.class))
                         && Objects.isNull(o.getAnnotation(ManyToOne.class))
                         && Objects.isNull(o.getAnnotation(OneToOne.class))
                         && Objects.isNull(o.getAnnotation(ManyToMany.class))
                         && Objects.isNull(o.getAnnotation(Transient.class));
-            }).map(FieldItem::formElement).collect(Collectors.toSet()));
+            }).map(FieldItem::formElement).forEach(o -> fieldItems.put(o.getName(), o));
 
         } else {
-            fieldItems.addAll(Arrays.stream(vo.fields()).map(FieldItem::formField).collect(Collectors.toSet()));
             if (!vo.onlyIncludeDefinedFields()) {
-                fieldItems.addAll(element.getEnclosedElements().stream().filter(o -> {
+                element.getEnclosedElements().stream().filter(o -> {
                     return o.getKind().isField()
                             && !ArrayUtils.contains(vo.excludes(), o.getSimpleName().toString()) //不包含在excludes声明中
                             && Objects.isNull(o.getAnnotation(VO.Exclude.class)) // 且该字段没有@Exclude标记
                             && Objects.isNull(o.getAnnotation(Transient.class)); // 且该字段没有@Transient标记
-                }).map(FieldItem::formElement).collect(Collectors.toSet()));
+                }).map(FieldItem::formElement).forEach(o -> fieldItems.put(o.getName(), o));
 
             }
 
         }
+        Arrays.stream(vo.fields()).map(FieldItem::formField).forEach(o -> fieldItems.put(o.getName(), o));
+        return new LinkedHashSet<>(fieldItems.values());
+    }
 
-        StringBuilder fromMethodReturnBuilder = new StringBuilder();
-        fromMethodReturnBuilder.append("$T<$T> optional = Optional.ofNullable(domain);\n");
-        fromMethodReturnBuilder.append("return $T.builder()");
-        fieldItems.forEach(voField -> {
-            String expression = StringUtils.isNotBlank(voField.getExpression()) ? voField.getExpression() : voField.getName();
-            Element fieldElement = ElementUtils.streamingGetFieldElement(element, expression);
-            TypeName typeName;
-            ElementUtils.TypeDesc typeDesc = ElementUtils.getElementTypeDesc(fieldElement);
-            UseVo useVoAnnotation = fieldElement.getAnnotation(UseVo.class);
-            if (typeDesc.isCollection()) { //该字段是一个集合类型
-                if (Objects.isNull(useVoAnnotation))
-                    typeName = ParameterizedTypeName.get(ClassName.bestGuess(typeDesc.getClassName()),
-                            typeDesc.getTypeParams().stream().map(ClassName::bestGuess).collect(Collectors.toSet()).toArray(new TypeName[]{}));
-                else typeName = ParameterizedTypeName.get(ClassName.bestGuess(typeDesc.getClassName()),
-                        ClassName.bestGuess(useVoAnnotation.value()));
-            } else if (Objects.nonNull(useVoAnnotation)) {
-                typeName = ClassName.bestGuess(useVoAnnotation.value());
-            } else
-                typeName = ClassName.bestGuess(fieldElement.asType().toString());
-            FieldSpec.Builder fieldSpecBuilder = FieldSpec.builder(typeName, voField.getName(), Modifier.PRIVATE);
-            addFieldDoc(fieldElement, fieldSpecBuilder);
-            if (voField.extendFastJsonAnnotation)
-                setFastJson(fieldElement, fieldSpecBuilder);
-            voBuilder.addField(fieldSpecBuilder.build());
+    /**
+     * 解析VO读取的关联组成的实体图,点号路径上的每个关联和{@code @UseVo}字段都是一个节点,
+     * {@code @UseVo}字段指向的VO能在实体类上找到时继续展开它读取的关联
+     *
+     * @param element  实体类元素
+     * @param vo       VO注解
+     * @param visiting 正在展开的VO,用于在VO互相引用时停止展开
+     * @return 实体图的根节点
+     */
+    private VoModel.GraphNode resolveFetchGraph(Element element, VO vo, Set<String> visiting) {
+        VoModel.GraphNode root = new VoModel.GraphNode();
+        String voClassName = getVoPackageName(element, vo) + "." + getVoClassName(element, vo);
+        if (!visiting.add(voClassName)) return root;
+        getFieldItems(element, vo).stream()
+                .map(voField -> StringUtils.isNotBlank(voField.getExpression()) ? voField.getExpression() : voField.getName())
+                .sorted()
+                .forEach(expression -> {
+                    VoModel.GraphNode node = root;
+                    int end = -1;
+                    do {
+                        end = expression.indexOf('.', end + 1);
+                        String prefix = end < 0 ? expression : expression.substring(0, end);
+                        Element fieldElement = fieldResolver.getFieldElement(element, prefix);
+                        UseVo useVo = fieldElement.getAnnotation(UseVo.class);
+                        if (end < 0 && Objects.isNull(useVo)) break; //最后一段只有指定了VO时才需要加载
+                        if (!isAssociation(fieldElement)) break;
+                        node = node.child(fieldElement.getSimpleName().toString());
+                        if (end < 0)
+                            mergeNestedFetchGraph(node, fieldElement, useVo.value(), visiting);
+                    } while (end >= 0);
+                });
+        visiting.remove(voClassName);
+        return root;
+    }
+
+    /**
+     * 在{@code @UseVo}字段的元素类型上查找生成指定VO的注解,把该VO的实体图合并到节点上
+     */
+    private void mergeNestedFetchGraph(VoModel.GraphNode node, Element fieldElement, String useVo, Set<String> visiting) {
+        TypeElement nestedElement = getNestedEntity(fieldElement);
+        if (Objects.isNull(nestedElement)) return;
+        //其它模块中的VO优先使用索引中记录的实体图
+        Optional<VoIndex.Entry> indexEntry = findIndexEntry(nestedElement.getQualifiedName().toString(), useVo);
+        if (indexEntry.isPresent() && indexEntry.get().hasOption(VoIndex.ENTITY_GRAPH)) {
+            for (String path : indexEntry.get().getGraph()) {
+                VoModel.GraphNode child = node;
+                for (String name : path.split("\\."))
+                    child = child.child(name);
+            }
+            return;
+        }
+        getVoAnnotations(nestedElement).stream()
+                .filter(o -> useVo.equals(getVoPackageName(nestedElement, o) + "." + getVoClassName(nestedElement, o)))
+                .findFirst()
+                .ifPresent(o -> node.merge(resolveFetchGraph(nestedElement, o, visiting)));
+    }
+
+    /**
+     * 获取{@code @UseVo}字段映射的实体类,集合为元素类型,{@link Map}为值的类型
+     *
+     * @param fieldElement 字段元素
+     * @return 实体类元素, 无法确定时为{@code null}
+     */
+    private TypeElement getNestedEntity(Element fieldElement) {
+        ElementUtils.TypeDesc typeDesc = ElementUtils.getElementTypeDesc(fieldElement);
+        return typeDesc.isCollection() ?
+                typeDesc.getTypeParams().stream().reduce((first, second) -> second)
+                        .map(o -> processingEnv.getElementUtils().getTypeElement(o)).orElse(null) :
+                ElementUtils.getTypeElement(fieldElement.asType());
+    }
+
+    /**
+     * 从类路径上的索引中查找其它模块生成的VO,实体类在本次编译的源码中时不使用索引
+     *
+     * @param entityClassName 实体类全限定名
+     * @param voClassName     VO类全限定名
+     * @return 索引中的VO, 实体类没有索引或索引中没有该VO时为空
+     */
+    private Optional<VoIndex.Entry> findIndexEntry(String entityClassName, String voClassName) {
+        if (sourceTypeNames.contains(entityClassName)) return Optional.empty();
+        return indexCache.computeIfAbsent(entityClassName, this::readIndex)
+                .flatMap(entries -> entries.stream().filter(o -> o.getVoClassName().equals(voClassName)).findFirst());
+    }
+
+    private Optional<List<VoIndex.Entry>> readIndex(String entityClassName) {
+        try (Reader reader = _filer.getResource(StandardLocation.CLASS_PATH, "", VoIndex.resourceName(entityClassName)).openReader(true)) {
+            return Optional.of(VoIndex.read(reader));
+        } catch (IOException | IllegalArgumentException e) { //没有索引
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 检查{@code @UseVo}指向的VO:实体类有索引时VO必须在索引中;
+     * 当前VO打开了需要调用嵌套VO同名方法的选项(例如{@code jsonWriter})时,被引用的VO也必须生成了这些方法
+     *
+     * @param voModel VO数据
+     */
+    private void checkUseVo(VoModel voModel) {
+        //javac在同一个位置只输出一个错误,所有问题合并为一条
+        List<String> problems = new ArrayList<>();
+        for (VoModel.FieldModel voField : voModel.getFields()) {
+            if (Objects.isNull(voField.getUseVo())) continue;
+            if (!generatedVos.containsKey(voField.getUseVo()) && Objects.nonNull(voField.getUseVoEntity())
+                    && !sourceTypeNames.contains(voField.getUseVoEntity())) {
+                Optional<List<VoIndex.Entry>> entries = indexCache.computeIfAbsent(voField.getUseVoEntity(), this::readIndex);
+                if (entries.isPresent() && !findIndexEntry(voField.getUseVoEntity(), voField.getUseVo()).isPresent()) {
+                    problems.add(String.format("字段%s使用的VO %s不存在,%s生成的VO有%s", voField.getName(), voField.getUseVo(), voField.getUseVoEntity(),
+                            entries.get().stream().map(VoIndex.Entry::getVoClassName).collect(Collectors.toList())));
+                    continue;
+                }
+            }
+            List<String> missingOptions = new ArrayList<>();
+            if (voModel.isJsonWriter() && !isUseVoOptionEnabled(voField, VoIndex.JSON_WRITER, VoModel::isJsonWriter,
+                    member -> member.getSimpleName().contentEquals("writeJson")))
+                missingOptions.add(VoIndex.JSON_WRITER);
+            if (voModel.isMappingContext() && !isUseVoOptionEnabled(voField, VoIndex.MAPPING_CONTEXT, VoModel::isMappingContext,
+                    member -> member.getKind() == ElementKind.METHOD && ((ExecutableElement) member).getParameters().stream()
+                            .anyMatch(o -> o.asType().toString().equals(MappingContext.class.getName()))))
+                missingOptions.add(VoIndex.MAPPING_CONTEXT);
+            if (voModel.isDelta() && !isUseVoOptionEnabled(voField, VoIndex.DELTA, VoModel::isDelta,
+                    member -> member.getSimpleName().contentEquals("writeDelta")))
+                missingOptions.add(VoIndex.DELTA);
+            if (voModel.isBinaryCodec() && !isUseVoOptionEnabled(voField, VoIndex.BINARY_CODEC, VoModel::isBinaryCodec,
+                    member -> member.getSimpleName().contentEquals("writeBody")))
+                missingOptions.add(VoIndex.BINARY_CODEC);
+            if (!missingOptions.isEmpty())
+                problems.add(String.format("字段%s使用的VO %s没有打开%s", voField.getName(), voField.getUseVo(), missingOptions));
+        }
+        if (!problems.isEmpty())
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    voModel.getClassName() + "的@UseVo字段有错误: " + String.join("; ", problems), voModel.getElement());
+    }
+
+    /**
+     * {@code @UseVo}指向的VO是否打开了选项:本次编译生成的VO检查其注解,其它模块的VO检查索引,
+     * 没有索引的VO(手写的或由旧版本生成的)检查其成员
+     *
+     * @param voField   {@code @UseVo}字段
+     * @param option    索引中的选项名称,同时也是{@code @VO}的属性名称
+     * @param generated 本次编译生成的VO是否打开了选项
+     * @param member    手写的VO上需要有的成员
+     * @return VO还不存在或将在本次编译中生成时无法确定,返回{@code true}
+     */
+    private boolean isUseVoOptionEnabled(VoModel.FieldModel voField, String option,
+                                         Predicate<VoModel> generated, Predicate<Element> member) {
+        VoModel nestedModel = generatedVos.get(voField.getUseVo());
+        if (Objects.nonNull(nestedModel)) return generated.test(nestedModel);
+        Optional<VoIndex.Entry> entry = Objects.isNull(voField.getUseVoEntity()) ? Optional.empty() :
+                findIndexEntry(voField.getUseVoEntity(), voField.getUseVo());
+        if (entry.isPresent()) return entry.get().hasOption(option);
+        //VO不在本次编译的源码中而实体类在时,VO稍后才会生成,类路径上的同名类可能是上次编译留下的
+        TypeElement nestedElement = processingEnv.getElementUtils().getTypeElement(voField.getUseVo());
+        if (Objects.isNull(nestedElement)
+                || (!sourceTypeNames.contains(voField.getUseVo()) && sourceTypeNames.contains(voField.getUseVoEntity())))
+            return true;
+        return nestedElement.getEnclosedElements().stream().anyMatch(member);
+    }
+
+    /**
+     * 为每个实体类写入一个索引资源,资源只关联该实体类,不影响增量编译
+     *
+     * @param voModels 本轮生成的VO
+     */
+    private void writeIndex(List<VoModel> voModels) {
+        Map<Element, List<VoModel>> voModelsByEntity = voModels.stream()
+                .collect(Collectors.groupingBy(VoModel::getElement, LinkedHashMap::new, Collectors.toList()));
+        voModelsByEntity.forEach((element, entityVoModels) -> {
+            String entityClassName = ((TypeElement) element).getQualifiedName().toString();
+            try (Writer writer = _filer.createResource(StandardLocation.CLASS_OUTPUT, "", VoIndex.resourceName(entityClassName), element).openWriter()) {
+                writer.write(VoIndex.write(entityVoModels));
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "写入VO索引失败: " + e.getMessage(), element);
+            }
+        });
+    }
+
+    /**
+     * 字段是否是实体关联,只有关联可以出现在实体图中
+     */
+    private boolean isAssociation(Element fieldElement) {
+        if (Objects.nonNull(fieldElement.getAnnotation(ManyToOne.class))
+                || Objects.nonNull(fieldElement.getAnnotation(OneToOne.class))
+                || Objects.nonNull(fieldElement.getAnnotation(OneToMany.class))
+                || Objects.nonNull(fieldElement.getAnnotation(ManyToMany.class))
+                || Objects.nonNull(fieldElement.getAnnotation(ElementCollection.class)))
+            return true;
+        TypeElement typeElement = ElementUtils.getTypeElement(fieldElement.asType());
+        return fieldElement.asType().getKind() == TypeKind.TYPEVAR
+                || (Objects.nonNull(typeElement) && Objects.nonNull(typeElement.getAnnotation(Entity.class)));
+    }
+
+    /**
+     * 实体类或它的父类上是否有{@code @IdClass}
+     */
+    private boolean hasIdClass(Element element) {
+        for (TypeElement typeElement = (TypeElement) element; Objects.nonNull(typeElement);
+             typeElement = ElementUtils.getTypeElement(typeElement.getSuperclass()))
+            if (Objects.nonNull(typeElement.getAnnotation(IdClass.class))) return true;
+        return false;
+    }
+
+    /**
+     * 字段是否是嵌入对象,包括{@code @Embedded}、{@code @EmbeddedId}和类型上有{@code @Embeddable}的字段
+     */
+    private boolean isEmbedded(Element fieldElement) {
+        if (Objects.nonNull(fieldElement.getAnnotation(Embedded.class)) || Objects.nonNull(fieldElement.getAnnotation(EmbeddedId.class)))
+            return true;
+        TypeElement typeElement = ElementUtils.getTypeElement(fieldElement.asType());
+        return Objects.nonNull(typeElement) && Objects.nonNull(typeElement.getAnnotation(Embeddable.class));
+    }
+
+    /**
+     * 获取实体类在JPQL中的名称,即{@code @Entity}的{@code name},没有指定时为类的简单名称
+     *
+     * @param element 实体类元素
+     * @return 实体名称
+     */
+    private String getEntityName(Element element) {
+        Entity entity = element.getAnnotation(Entity.class);
+        return Objects.nonNull(entity) && StringUtils.isNotBlank(entity.name()) ? entity.name() : element.getSimpleName().toString();
+    }
+
+    /**
+     * 解析路径表达式上的每一段
+     *
+     * @param element     实体类元素
+     * @param domainClass 实体类名
+     * @param expression  字段路径表达式
+     * @return 路径上的每一段
+     */
+    private List<VoModel.PathSegment> resolvePath(Element element, ClassName domainClass, String expression) {
+        List<VoModel.PathSegment> path = new ArrayList<>();
+        int end = -1;
+        do {
+            end = expression.indexOf('.', end + 1);
+            String prefix = end < 0 ? expression : expression.substring(0, end);
+            Element fieldElement = fieldResolver.getFieldElement(element, prefix);
+            TypeMirror fieldType = fieldElement.asType();
+            path.add(VoModel.PathSegment.builder()
+                    .expression(prefix)
+                    .readMethodName(ElementUtils.getReadMethodName(fieldElement))
+                    .typeName(fieldType.getKind() == TypeKind.TYPEVAR ? domainClass : TypeName.get(fieldType))
+                    .defaultValue(ElementUtils.getDefaultValueLiteral(fieldType))
+                    .embedded(isEmbedded(fieldElement))
+                    .build());
+        } while (end >= 0);
+        return path;
+    }
+
+    /**
+     * 根据已经解析的数据生成VO源码,不访问任何元素,可以在任意线程上调用
+     *
+     * @param voModel VO数据
+     * @return VO源码文件
+     */
+    private JavaFile buildVo(VoModel voModel) {
+        ClassName voClass = voModel.getVoClass();
+
+        //创建类型声明,并关联到实体类以便增量编译时只重新生成变化的实体对应的VO
+        TypeSpec.Builder voBuilder = TypeSpec.classBuilder(voModel.getClassName())
+                .addOriginatingElement(voModel.getElement());
+
+        /*
+        添加类注释
+         */
+        if (voModel.getLayout() == VO.Layout.IMMUTABLE)
+            voBuilder.addAnnotation(Value.class);
+        else {
+            voBuilder.addAnnotation(Data.class);
+            voBuilder.addAnnotation(NoArgsConstructor.class);
+            voBuilder.addAnnotation(AllArgsConstructor.class);
+            voBuilder.addAnnotation(Builder.class);
+        }
+
+        if (Objects.nonNull(voModel.getApiModel()))
+            voBuilder.addAnnotation(voModel.getApiModel());
 
 
+        boolean getterChain = voModel.getMappingMode() == VO.MappingMode.GETTER_CHAIN;
+        CodeBlock.Builder getterChainBuilder = CodeBlock.builder();
+        Map<String, String> pathVariables = new HashMap<>();
+        StringBuilder fromMethodReturnBuilder = new StringBuilder();
+        if (!getterChain)
+            fromMethodReturnBuilder.append("$T<$T> optional = Optional.ofNullable(domain);\n");
+        //不可变布局直接调用全参构造方法,参数顺序与字段声明顺序一致
+        boolean immutable = voModel.getLayout() == VO.Layout.IMMUTABLE;
+        fromMethodReturnBuilder.append(immutable ? "return new $T(" : "return $T.builder()");
+        for (int index = 0; index < voModel.getFields().size(); index++) {
+            VoModel.FieldModel voField = voModel.getFields().get(index);
+            voBuilder.addField(immutable ? voField.getFieldSpec().toBuilder().addModifiers(Modifier.FINAL).build() : voField.getFieldSpec());
+
             //.status(optional.map(MCpConfig::getStatus).orElse(Defaults.defaultValue()))
             //.status(domain.getStatus())
-            if (typeDesc.isCollection() && Objects.nonNull(useVoAnnotation)) {
-                fromMethodReturnBuilder.append("\n").append(".").append(voField.getName()).append("(")
-                        .append(ReflectionUtils.getClassSimpleName(useVoAnnotation.value())).append(".from").append(typeDesc.getCollectionType())
-                        .append("(domain").append(ElementUtils.getReadExpression(expression)).append("))");
-            } else if (Objects.nonNull(useVoAnnotation)) {
-                fromMethodReturnBuilder.append("\n").append(".").append(voField.getName()).append("(")
-                        .append(ReflectionUtils.getClassSimpleName(useVoAnnotation.value())).append(".from")
-                        .append("(domain").append(ElementUtils.getReadExpression(expression)).append("))");
+            StringBuilder valueBuilder = new StringBuilder();
+            if (getterChain) {
+                String variable = appendGetterChain(voField.getPath(), voField.getPath().size() - 1, getterChainBuilder, pathVariables);
+                if (Objects.nonNull(voField.getUseVo())) //嵌套的值为null时VO字段也为null,不会为互相引用的VO类型无限递归地创建空VO
+                    valueBuilder.append(variable).append(" == null ? null : ")
+                            .append(ReflectionUtils.getClassSimpleName(voField.getUseVo())).append(".from")
+                            .append(voField.isCollection() ? voField.getCollectionType() : "")
+                            .append("(").append(variable).append(")");
+                else valueBuilder.append(voField.copyExpression(variable));
+            } else if (voField.isCollection() && Objects.nonNull(voField.getUseVo())) {
+                valueBuilder.append(ReflectionUtils.getClassSimpleName(voField.getUseVo())).append(".from").append(voField.getCollectionType())
+                        .append("(domain").append(ElementUtils.getReadExpression(voField.getExpression())).append(")");
+            } else if (Objects.nonNull(voField.getUseVo())) {
+                valueBuilder.append(ReflectionUtils.getClassSimpleName(voField.getUseVo())).append(".from")
+                        .append("(domain").append(ElementUtils.getReadExpression(voField.getExpression())).append(")");
             } else {
-                fromMethodReturnBuilder.append("\n").append(".").append(voField.getName()).append("(");//.append("domain").append(ElementUtils.getReadExpression(expression)).append(")");
-                String[] expressions = expression.split("\\.");
+                List<VoModel.PathSegment> path = voField.getPath();
+
+                valueBuilder.append(String.format("optional.map(%s::%s)"
+                        , voModel.getDomainClass().simpleName()
+                        , path.get(0).getReadMethodName()));
+                for (int i = 1; i < path.size(); i++)
+                    valueBuilder.append(String.format(".map(val->{return val.%s();})", path.get(i).getReadMethodName()));
+                if (voField.isArray())
+                    valueBuilder.append(".map(val->{return val.clone();})");
+                //带类型参数的类型和数组不能作为类字面量,它们的缺省值都是null
+                if (voField.getTypeName() instanceof ParameterizedTypeName || voField.getTypeName() instanceof ArrayTypeName)
+                    valueBuilder.append(".orElse(null)");
+                else
+                    valueBuilder.append(String.format(".orElse(com.google.common.base.Defaults.defaultValue(%s.class))", voField.getTypeName()));
+            }
+            if (immutable)
+                fromMethodReturnBuilder.append(index == 0 ? "\n" : ",\n").append(valueBuilder);
+            else
+                fromMethodReturnBuilder.append("\n").append(".").append(voField.getName()).append("(").append(valueBuilder).append(")");
+        }
+        fromMethodReturnBuilder.append(immutable ? ")" : "\n.build()");
+
+
+        //记录统计或使用缓存时映射逻辑放到私有的mapFrom中,from负责计数和采样计时,或者先查找缓存
+        boolean wrapped = voModel.isMetrics() || voModel.getCacheSize() > 0;
+        String fromMethodName = wrapped ? "mapFrom" : "from";
+        Modifier fromMethodVisibility = wrapped ? Modifier.PRIVATE : Modifier.PUBLIC;
+        if (getterChain)
+            voBuilder.addMethod(MethodSpec.methodBuilder(fromMethodName).addModifiers(fromMethodVisibility, Modifier.STATIC)
+                    .returns(voClass)
+                    .addParameter(voModel.getDomainClass(), "domain")
+                    .addCode(getterChainBuilder.build())
+                    .addStatement(fromMethodReturnBuilder.toString(), voClass)
+                    .build());
+        else
+            voBuilder.addMethod(MethodSpec.methodBuilder(fromMethodName).addModifiers(fromMethodVisibility, Modifier.STATIC)
+                    .returns(voClass)
+                    .addParameter(voModel.getDomainClass(), "domain")
+                    .addStatement(fromMethodReturnBuilder.toString(),
+                            ClassName.bestGuess(Optional.class.getName()),
+                            voModel.getDomainClass(),
+                            voClass)
+                    .build());
+
+
+        if (voModel.getCacheSize() > 0)
+            addCache(voBuilder, voModel);
+        if (voModel.isMetrics())
+            addMetrics(voBuilder, voModel);
+        if (voModel.isProjection())
+            addProjection(voBuilder, voModel);
+        if (Objects.nonNull(voModel.getFetchGraph()))
+            addEntityGraph(voBuilder, voModel);
+        if (voModel.isJsonWriter())
+            addJsonWriter(voBuilder, voModel);
+        if (voModel.isUsedExtjsGrid())
+            addExtjsGridBatch(voBuilder, voModel);
+        addBatchMethods(voBuilder, voModel);
+        addStreamingMethods(voBuilder, voModel);
+        if (voModel.isMappingContext())
+            addContextMethods(voBuilder, voModel);
+        if (voModel.isBinaryCodec())
+            addBinaryCodec(voBuilder, voModel);
+        if (voModel.isFieldMask())
+            addMaskMethods(voBuilder, voModel);
+        if (voModel.isDelta())
+            addDiffMethods(voBuilder, voModel);
+
+        TypeSpec validationGroupsInterface = voBuilder.addModifiers(Modifier.PUBLIC)
+                .build();
+
+        return JavaFile.builder(voModel.getPackageName(), validationGroupsInterface).
+                build();
+    }
+
+    /**
+     * 添加按字段掩码只映射部分字段的方法,每个字段对应掩码中的一位,没有请求的字段不读取,取缺省值
+     * <p>
+     * 每个字段的路径在自己的条件分支中读取,没有请求的关联(包括{@code @UseVo}字段)不会触发延迟加载
+     *
+     * @param voBuilder VO类型声明
+     * @param voModel   VO数据
+     */
+    private void addMaskMethods(TypeSpec.Builder voBuilder, VoModel voModel) {
+        ClassName voClass = voModel.getVoClass();
+        ClassName domainClass = voModel.getDomainClass();
+        boolean immutable = voModel.getLayout() == VO.Layout.IMMUTABLE;
+        List<VoModel.FieldModel> voFields = voModel.getFields();
+
+        //值变量的名称预先放入路径变量中,路径变量不会和它们重名
+        Map<String, String> valueVariables = new LinkedHashMap<>();
+        for (VoModel.FieldModel voField : voFields) {
+            String variable = voField.getName() + "Value";
+            while (RESERVED_VARIABLES.contains(variable) || valueVariables.containsValue(variable))
+                variable = "_" + variable;
+            valueVariables.put("\0" + voField.getName(), variable);
+        }
+
+        Set<String> maskNames = new HashSet<>();
+        CodeBlock.Builder parseBuilder = CodeBlock.builder();
+        CodeBlock.Builder mapBuilder = CodeBlock.builder();
+        List<CodeBlock> values = new ArrayList<>();
+        for (int index = 0; index < voFields.size(); index++) {
+            VoModel.FieldModel voField = voFields.get(index);
+            String constant = getMaskConstant(voField);
+            voBuilder.addField(FieldSpec.builder(long.class, constant, Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("1L << $L", index)
+                    .build());
+            //JSON名称和字段名称都可以出现在字段列表中
+            for (String maskName : new LinkedHashSet<>(Arrays.asList(voField.getName(), voField.getJsonName())))
+                if (Objects.nonNull(maskName) && maskNames.add(maskName))
+                    parseBuilder.addStatement("case $S: mask |= $L; break", maskName, constant);
+
+            String valueVariable = valueVariables.get("\0" + voField.getName());
+            String defaultValue = Objects.nonNull(voField.getUseVo()) ? "null" : voField.getPath().get(voField.getPath().size() - 1).getDefaultValue();
+            mapBuilder.addStatement("$T $L = $L", voField.getTypeName(), valueVariable, defaultValue);
+            mapBuilder.beginControlFlow("if ((mask & $L) != 0)", constant);
+            Map<String, String> pathVariables = new HashMap<>(valueVariables);
+            String variable = appendGetterChain(voField.getPath(), voField.getPath().size() - 1, mapBuilder, pathVariables);
+            if (Objects.nonNull(voField.getUseVo()))
+                mapBuilder.addStatement("$L = $L == null ? null : $T.from$L($L)", valueVariable, variable, ClassName.bestGuess(voField.getUseVo()),
+                        voField.isCollection() ? voField.getCollectionType() : "", variable);
+            else
+                mapBuilder.addStatement("$L = $L", valueVariable, voField.copyExpression(variable));
+            mapBuilder.endControlFlow();
+            values.add(immutable ? CodeBlock.of("$L", valueVariable) : CodeBlock.of(".$L($L)", voField.getName(), valueVariable));
+        }
+
+        voBuilder.addField(FieldSpec.builder(long.class, "ALL_FIELDS", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .initializer(voFields.size() == MAX_MASK_FIELDS ? "-1L" : "(1L << $L) - 1", voFields.size())
+                .build());
+
+        voBuilder.addMethod(MethodSpec.methodBuilder("parseMask").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addJavadoc("把逗号分隔的字段列表转换为字段掩码,字段可以使用VO中的名称或JSON中的名称\n")
+                .addJavadoc("\n@param fields 字段列表,为{@code null}时返回{@link #ALL_FIELDS}")
+                .addJavadoc("\n@return 字段掩码")
+                .addJavadoc("\n@throws IllegalArgumentException 字段不存在\n")
+                .returns(long.class)
+                .addParameter(String.class, "fields")
+                .addStatement("if (fields == null) return ALL_FIELDS")
+                .addStatement("long mask = 0L")
+                .addStatement("int start = 0")
+                .beginControlFlow("while (start <= fields.length())")
+                .addStatement("int end = fields.indexOf(',', start)")
+                .addStatement("if (end < 0) end = fields.length()")
+                .addStatement("String field = fields.substring(start, end).trim()")
+                .addStatement("start = end + 1")
+                .beginControlFlow("switch (field)")
+                .addStatement("case \"\": break")
+                .addCode(parseBuilder.build())
+                .addStatement("default: throw new $T($S + field)", IllegalArgumentException.class, voModel.getClassName() + "没有字段")
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("return mask")
+                .build());
+
+        MethodSpec.Builder fromBuilder = MethodSpec.methodBuilder("from").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addJavadoc("只映射{@code mask}中的字段,其它字段取缺省值,实体为{@code null}时返回{@code null}\n")
+                .returns(voClass)
+                .addParameter(domainClass, "domain")
+                .addParameter(long.class, "mask")
+                .addStatement("if (domain == null) return null");
+        if (voModel.isMetrics())
+            fromBuilder.addStatement("$L.recordCall(false, 0L)", METRICS_FIELD);
+        fromBuilder.addCode(mapBuilder.build());
+        if (immutable)
+            fromBuilder.addStatement("return new $T($L)", voClass, CodeBlock.join(values, ", "));
+        else
+            fromBuilder.addStatement("return $T.builder()$L.build()", voClass, CodeBlock.join(values, ""));
+        voBuilder.addMethod(fromBuilder.build());
+
+        ClassName listClass = ClassName.get(List.class);
+        voBuilder.addMethod(MethodSpec.methodBuilder("fromList").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(ParameterizedTypeName.get(listClass, voClass))
+                .addParameter(ParameterizedTypeName.get(listClass, domainClass), "list")
+                .addParameter(long.class, "mask")
+                .addStatement("if (list == null) return null")
+                .addStatement("$T<$T> result = new $T<>(list.size())", listClass, voClass, ArrayList.class)
+                .beginControlFlow("for ($T domain : list)", domainClass)
+                .addStatement("result.add(from(domain, mask))")
+                .endControlFlow()
+                .addStatement("return result")
+                .build());
+    }
+
+    /**
+     * 添加比较两个VO的{@code diff}和只写入部分字段的{@code writeDelta},字段掩码与{@code from(domain, mask)}相同
+     * <p>
+     * 基本类型直接比较,浮点数使用{@code compare},不装箱;数组比较内容;其它值(包括{@code @UseVo}的VO)先比较引用再调用{@code equals}
+     *
+     * @param voBuilder VO类型声明
+     * @param voModel   VO数据
+     */
+    private void addDiffMethods(TypeSpec.Builder voBuilder, VoModel voModel) {
+        ClassName voClass = voModel.getVoClass();
+        ClassName jsonWriters = ClassName.get(JsonWriters.class);
+        CodeBlock.Builder diffBuilder = CodeBlock.builder();
+        CodeBlock.Builder writeBuilder = CodeBlock.builder();
+        for (VoModel.FieldModel voField : voModel.getFields()) {
+            String constant = getMaskConstant(voField);
+            String name = voField.getName();
+            TypeName typeName = voField.getTypeName();
+            CodeBlock changed;
+            if (typeName.equals(TypeName.FLOAT) || typeName.equals(TypeName.DOUBLE))
+                changed = CodeBlock.of("$T.compare(previous.$L, current.$L) != 0", typeName.box(), name, name);
+            else if (typeName.isPrimitive())
+                changed = CodeBlock.of("previous.$L != current.$L", name, name);
+            else if (typeName instanceof ArrayTypeName)
+                changed = CodeBlock.of("!$T.equals(previous.$L, current.$L)", Arrays.class, name, name);
+            else
+                changed = CodeBlock.of("!$T.equals(previous.$L, current.$L)", Objects.class, name, name);
+            diffBuilder.addStatement("if ($L) mask |= $L", changed, constant);
 
-                fromMethodReturnBuilder.append(String.format("optional.map(%s::%s)"
-                        , ClassName.bestGuess(ReflectionUtils.getClassSimpleName(element.asType().toString()))
-                        , "get" + stringFirstUpper(expressions[0])));
-                for (int i = 1; i < expressions.length; i++)
-                    fromMethodReturnBuilder.append(String.format(".map(val->{return val.%s();})", "get" + stringFirstUpper(expressions[i])));
-                fromMethodReturnBuilder.append(String.format(".orElse(com.google.common.base.Defaults.defaultValue(%s.class))", typeName));
-                fromMethodReturnBuilder.append(")");
+            if (!voField.isJsonSerialize()) continue;
+            writeBuilder.beginControlFlow("if ((mask & $L) != 0)", constant)
+                    .addStatement("out.append(separator).append($S)", "\"" + voField.getJsonName() + "\":")
+                    .addStatement("separator = ','");
+            String value = "vo." + name;
+            if (Objects.nonNull(voField.getUseVo())) {
+                ClassName useVoClass = ClassName.bestGuess(voField.getUseVo());
+                CodeBlock elementWriter = CodeBlock.of("(element, o) -> $T.writeDelta(element, $T.ALL_FIELDS, o)", useVoClass, useVoClass);
+                if ("Map".equals(voField.getCollectionType()))
+                    writeBuilder.addStatement("$T.writeMap(out, $L, $L)", jsonWriters, value, elementWriter);
+                else if (voField.isArray())
+                    writeBuilder.addStatement("$T.writeArray(out, $L == null ? null : $T.asList($L).iterator(), $L)", jsonWriters, value, Arrays.class, value, elementWriter);
+                else if (voField.isCollection())
+                    writeBuilder.addStatement("$T.writeArray(out, $L$L, $L)", jsonWriters, value,
+                            "Iterator".equals(voField.getCollectionType()) ? "" : " == null ? null : " + value + ".iterator()", elementWriter);
+                else writeBuilder.addStatement("$T.writeDelta($L, $T.ALL_FIELDS, out)", useVoClass, value, useVoClass);
+            } else if (typeName.equals(ClassName.get(String.class)))
+                writeBuilder.addStatement("$T.writeString(out, $L)", jsonWriters, value);
+            else if (typeName.isPrimitive() || Objects.isNull(voField.getJsonFormat()))
+                writeBuilder.addStatement("$T.writeValue(out, $L)", jsonWriters, value);
+            else
+                writeBuilder.addStatement("$T.writeValue(out, $L, $S)", jsonWriters, value, voField.getJsonFormat());
+            writeBuilder.endControlFlow();
+        }
+
+        voBuilder.addMethod(MethodSpec.methodBuilder("diff").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addJavadoc("比较同一个实体的两个VO快照\n")
+                .addJavadoc("\n@param previous 之前的VO")
+                .addJavadoc("\n@param current  当前的VO")
+                .addJavadoc("\n@return 值发生变化的字段的掩码, 只有一个为{@code null}时返回{@link #ALL_FIELDS}\n")
+                .returns(long.class)
+                .addParameter(voClass, "previous")
+                .addParameter(voClass, "current")
+                .addStatement("if (previous == current) return 0L")
+                .addStatement("if (previous == null || current == null) return ALL_FIELDS")
+                .addStatement("long mask = 0L")
+                .addCode(diffBuilder.build())
+                .addStatement("return mask")
+                .build());
+        voBuilder.addMethod(MethodSpec.methodBuilder("writeDelta").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addJavadoc("只把{@code mask}中的字段写为JSON,值为{@code null}的字段写为{@code null},嵌套的VO写入全部字段。\n")
+                .addJavadoc("标识记录的字段(例如{@code id})需要调用方加入掩码\n")
+                .addParameter(voClass, "vo")
+                .addParameter(long.class, "mask")
+                .addParameter(Appendable.class, "out")
+                .addException(IOException.class)
+                .beginControlFlow("if (vo == null)")
+                .addStatement("out.append($S)", "null")
+                .addStatement("return")
+                .endControlFlow()
+                .addStatement("char separator = '{'")
+                .addCode(writeBuilder.build())
+                .addStatement("if (separator == '{') out.append('{')")
+                .addStatement("out.append('}')")
+                .build());
+    }
 
+    /**
+     * 添加二进制编解码方法,数据以结构哈希开头,之后依次是空值位图和不为{@code null}的字段
+     * <p>
+     * 整数使用变长编码,字符串为长度加UTF-8字节,{@code @UseVo}字段递归调用嵌套VO的{@code writeBody}和{@code readBody},
+     * 每个嵌套字段写入一次嵌套VO的结构哈希。{@link Iterator}和{@link Stream}字段只能读取一次,不参与编码,读取后为{@code null}
+     *
+     * @param voBuilder VO类型声明
+     * @param voModel   VO数据
+     */
+    private void addBinaryCodec(TypeSpec.Builder voBuilder, VoModel voModel) {
+        ClassName voClass = voModel.getVoClass();
+        ClassName codecs = ClassName.get(BinaryCodecs.class);
+        boolean immutable = voModel.getLayout() == VO.Layout.IMMUTABLE;
+        List<VoModel.FieldModel> voFields = voModel.getFields().stream()
+                .filter(o -> !"Iterator".equals(o.getCollectionType()) && !"Stream".equals(o.getCollectionType()))
+                .collect(Collectors.toList());
+        List<VoModel.FieldModel> nullableFields = voFields.stream().filter(o -> !o.getTypeName().isPrimitive()).collect(Collectors.toList());
+        int nullBytes = (nullableFields.size() + 7) / 8;
 
+        CodeBlock.Builder writeBuilder = CodeBlock.builder();
+        CodeBlock.Builder readBuilder = CodeBlock.builder();
+        if (nullBytes > 0) {
+            writeBuilder.addStatement("byte[] nulls = new byte[$L]", nullBytes);
+            for (int i = 0; i < nullableFields.size(); i++)
+                writeBuilder.addStatement("if (vo.$L == null) nulls[$L] |= $L", nullableFields.get(i).getName(), i / 8, 1 << (i % 8));
+            writeBuilder.addStatement("out.write(nulls)");
+            readBuilder.addStatement("byte[] nulls = new byte[$L]", nullBytes)
+                    .addStatement("in.readFully(nulls)");
+        }
+        Map<String, CodeBlock> values = new LinkedHashMap<>();
+        for (VoModel.FieldModel voField : voModel.getFields()) {
+            String valueVariable = voField.getName() + "Value";
+            values.put(voField.getName(), immutable ? CodeBlock.of("$L", valueVariable) : CodeBlock.of(".$L($L)", voField.getName(), valueVariable));
+            TypeName typeName = voField.getTypeName();
+            readBuilder.addStatement("$T $L = $L", typeName, valueVariable,
+                    typeName.isPrimitive() ? voField.getPath().get(voField.getPath().size() - 1).getDefaultValue() : "null");
+            if (!voFields.contains(voField)) continue;
+            int nullIndex = nullableFields.indexOf(voField);
+            String value = "vo." + voField.getName();
+            if (nullIndex >= 0) {
+                writeBuilder.beginControlFlow("if ($L != null)", value);
+                readBuilder.beginControlFlow("if ((nulls[$L] & $L) == 0)", nullIndex / 8, 1 << (nullIndex % 8));
             }
-        });
-        fromMethodReturnBuilder.append("\n.build()");
-        String packageName = StringUtils.isNotBlank(vo.packageName()) ? vo.packageName() :
-                element.getEnclosingElement().toString();
+            if (Objects.nonNull(voField.getUseVo()))
+                appendNestedCodec(voField, value, valueVariable, writeBuilder, readBuilder);
+            else {
+                writeBuilder.addStatement(getValueWriter(voField, value));
+                readBuilder.addStatement("$L = $L", valueVariable, getValueReader(voField));
+            }
+            if (nullIndex >= 0) {
+                writeBuilder.endControlFlow();
+                readBuilder.endControlFlow();
+            }
+        }
 
+        StringBuilder schema = new StringBuilder();
+        for (VoModel.FieldModel voField : voFields)
+            schema.append(voField.getName()).append(':').append(voField.getTypeName()).append(';');
+        voBuilder.addField(FieldSpec.builder(int.class, "SCHEMA_HASH", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .addJavadoc("由参与编码的字段名称和类型计算的结构哈希,字段变化后旧的编码数据不能再读取\n")
+                .initializer("0x$L", String.format("%08x", fnv1a(schema.toString())))
+                .build());
 
+        ClassName dataOutput = ClassName.get(DataOutput.class);
+        ClassName dataInput = ClassName.get(DataInput.class);
+        ClassName byteBuffer = ClassName.get(ByteBuffer.class);
+        voBuilder.addMethod(MethodSpec.methodBuilder("writeTo").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addJavadoc("写入结构哈希和VO,VO可以为{@code null}\n")
+                .addParameter(voClass, "vo")
+                .addParameter(dataOutput, "out")
+                .addException(IOException.class)
+                .addStatement("out.writeInt(SCHEMA_HASH)")
+                .addStatement("writeBody(vo, out)")
+                .build());
+        voBuilder.addMethod(MethodSpec.methodBuilder("writeTo").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(voClass, "vo")
+                .addParameter(byteBuffer, "buffer")
+                .addException(IOException.class)
+                .addStatement("writeTo(vo, $T.output(buffer))", codecs)
+                .build());
+        voBuilder.addMethod(MethodSpec.methodBuilder("readFrom").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addJavadoc("读取{@link #writeTo}写入的VO\n")
+                .addJavadoc("\n@throws $T 数据由字段不同的VO写入\n", SchemaMismatchException.class)
+                .returns(voClass)
+                .addParameter(dataInput, "in")
+                .addException(IOException.class)
+                .addStatement("$T.checkSchema($T.class, SCHEMA_HASH, in.readInt())", codecs, voClass)
+                .addStatement("return readBody(in)")
+                .build());
+        voBuilder.addMethod(MethodSpec.methodBuilder("readFrom").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(voClass)
+                .addParameter(byteBuffer, "buffer")
+                .addException(IOException.class)
+                .addStatement("return readFrom($T.input(buffer))", codecs)
+                .build());
+        voBuilder.addMethod(MethodSpec.methodBuilder("writeBody").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addJavadoc("不写入结构哈希,由包含该VO的VO调用\n")
+                .addParameter(voClass, "vo")
+                .addParameter(dataOutput, "out")
+                .addException(IOException.class)
+                .addStatement("out.writeBoolean(vo != null)")
+                .addStatement("if (vo == null) return")
+                .addCode(writeBuilder.build())
+                .build());
+        MethodSpec.Builder readBodyBuilder = MethodSpec.methodBuilder("readBody").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class).addMember("value", "$S", "unchecked").build())
+                .returns(voClass)
+                .addParameter(dataInput, "in")
+                .addException(IOException.class)
+                .addStatement("if (!in.readBoolean()) return null")
+                .addCode(readBuilder.build());
+        if (immutable)
+            readBodyBuilder.addStatement("return new $T($L)", voClass, CodeBlock.join(values.values(), ", "));
+        else
+            readBodyBuilder.addStatement("return $T.builder()$L.build()", voClass, CodeBlock.join(values.values(), ""));
+        voBuilder.addMethod(readBodyBuilder.build());
+    }
+
+    /**
+     * 嵌套VO字段的编码,先写入嵌套VO的结构哈希,集合写入大小后逐个写入元素
+     */
+    private void appendNestedCodec(VoModel.FieldModel voField, String value, String valueVariable,
+                                   CodeBlock.Builder writeBuilder, CodeBlock.Builder readBuilder) {
+        ClassName codecs = ClassName.get(BinaryCodecs.class);
+        ClassName useVoClass = ClassName.bestGuess(voField.getUseVo());
+        writeBuilder.addStatement("out.writeInt($T.SCHEMA_HASH)", useVoClass);
+        readBuilder.addStatement("$T.checkSchema($T.class, $T.SCHEMA_HASH, in.readInt())", codecs, useVoClass, useVoClass);
+        String collectionType = voField.getCollectionType();
+        if (!voField.isCollection()) {
+            writeBuilder.addStatement("$T.writeBody($L, out)", useVoClass, value);
+            readBuilder.addStatement("$L = $T.readBody(in)", valueVariable, useVoClass);
+            return;
+        }
+        readBuilder.addStatement("int size = $T.readSize(in)", codecs);
+        if ("Map".equals(collectionType)) {
+            TypeName keyType = ((ParameterizedTypeName) voField.getTypeName()).typeArguments.get(0);
+            writeBuilder.addStatement("$T.writeSize(out, $L.size())", codecs, value)
+                    .beginControlFlow("for ($T.Entry<$T, $T> entry : $L.entrySet())", Map.class, keyType, useVoClass, value)
+                    .addStatement("$T.writeObject(out, entry.getKey())", codecs)
+                    .addStatement("$T.writeBody(entry.getValue(), out)", useVoClass)
+                    .endControlFlow();
+            readBuilder.addStatement("$L = new $T<>((int) (size / 0.75f) + 1)", valueVariable, LinkedHashMap.class)
+                    .beginControlFlow("for (int i = 0; i < size; i++)")
+                    .addStatement("$L.put(($T) $T.readObject(in), $T.readBody(in))", valueVariable, keyType, codecs, useVoClass)
+                    .endControlFlow();
+            return;
+        }
+        if (voField.isArray()) {
+            writeBuilder.addStatement("$T.writeSize(out, $L.length)", codecs, value);
+            readBuilder.addStatement("$L = new $T[size]", valueVariable, useVoClass)
+                    .beginControlFlow("for (int i = 0; i < size; i++)")
+                    .addStatement("$L[i] = $T.readBody(in)", valueVariable, useVoClass)
+                    .endControlFlow();
+        } else {
+            if ("Iterable".equals(collectionType)) { //Iterable没有大小,先复制到列表中
+                writeBuilder.addStatement("$T<$T> elements = new $T<>()", List.class, useVoClass, ArrayList.class)
+                        .addStatement("$L.forEach(elements::add)", value);
+                value = "elements";
+            }
+            writeBuilder.addStatement("$T.writeSize(out, $L.size())", codecs, value);
+            readBuilder.addStatement("$T<$T> elements = $L", Collection.class, useVoClass, "Set".equals(collectionType) ?
+                    CodeBlock.of("new $T<>((int) (size / 0.75f) + 1)", LinkedHashSet.class) : CodeBlock.of("new $T<>(size)", ArrayList.class))
+                    .beginControlFlow("for (int i = 0; i < size; i++)")
+                    .addStatement("elements.add($T.readBody(in))", useVoClass)
+                    .endControlFlow()
+                    .addStatement("$L = ($T) elements", valueVariable, voField.getTypeName());
+        }
+        writeBuilder.beginControlFlow("for ($T element : $L)", useVoClass, value)
+                .addStatement("$T.writeBody(element, out)", useVoClass)
+                .endControlFlow();
+    }
+
+    /**
+     * 字段的类型能否由生成的编解码方法编码,{@link Iterator}和{@link Stream}字段不参与编码
+     *
+     * @param type  实体类上字段的类型
+     * @param useVo 是否是{@code @UseVo}字段,这类字段只检查集合类型和{@link Map}的键
+     */
+    private boolean isEncodableField(TypeMirror type, boolean useVo) {
+        if (type.getKind() != TypeKind.DECLARED) return useVo || isEncodable(type, true);
+        DeclaredType declaredType = (DeclaredType) type;
+        String className = ((TypeElement) declaredType.asElement()).getQualifiedName().toString();
+        if (className.equals(Iterator.class.getName()) || className.equals(Stream.class.getName())) return true;
+        if (!useVo) return isEncodable(type, true);
+        return !className.equals(Map.class.getName())
+                || (declaredType.getTypeArguments().size() == 2 && isEncodable(declaredType.getTypeArguments().get(0), false));
+    }
+
+    /**
+     * 非VO值能否编码,集合和{@link Map}中的值由{@link BinaryCodecs#writeObject}写入,不能是枚举
+     *
+     * @param type     值的类型
+     * @param topLevel 是否是字段本身
+     */
+    private boolean isEncodable(TypeMirror type, boolean topLevel) {
+        if (type.getKind().isPrimitive()) return true;
+        if (type.getKind() == TypeKind.ARRAY) return CODEC_ARRAY_TYPES.contains(type.toString());
+        if (type.getKind() != TypeKind.DECLARED) return false;
+        DeclaredType declaredType = (DeclaredType) type;
+        TypeElement typeElement = (TypeElement) declaredType.asElement();
+        if (typeElement.getKind() == ElementKind.ENUM) return topLevel;
+        String className = typeElement.getQualifiedName().toString();
+        if (CODEC_VALUE_TYPES.contains(className)) return true;
+        if (!CODEC_COLLECTION_TYPES.contains(className) && !CODEC_MAP_TYPES.contains(className)) return false;
+        return !declaredType.getTypeArguments().isEmpty()
+                && declaredType.getTypeArguments().stream().allMatch(o -> isEncodable(o, false));
+    }
+
+    /**
+     * 写入不为{@code null}的非VO值的语句
+     */
+    private CodeBlock getValueWriter(VoModel.FieldModel voField, String value) {
+        ClassName codecs = ClassName.get(BinaryCodecs.class);
+        TypeName typeName = voField.getTypeName().isBoxedPrimitive() ? voField.getTypeName().unbox() : voField.getTypeName();
+        if (typeName.equals(TypeName.BOOLEAN)) return CodeBlock.of("out.writeBoolean($L)", value);
+        if (typeName.equals(TypeName.BYTE)) return CodeBlock.of("out.writeByte($L)", value);
+        if (typeName.equals(TypeName.FLOAT)) return CodeBlock.of("out.writeFloat($L)", value);
+        if (typeName.equals(TypeName.DOUBLE)) return CodeBlock.of("out.writeDouble($L)", value);
+        if (typeName.isPrimitive()) return CodeBlock.of("$T.writeVarLong(out, $L)", codecs, value);
+        if (typeName.equals(ClassName.get(String.class))) return CodeBlock.of("$T.writeString(out, $L)", codecs, value);
+        if (voField.isEnumType()) return CodeBlock.of("$T.writeString(out, $L.name())", codecs, value);
+        if (typeName.equals(ClassName.get(java.sql.Timestamp.class))) return CodeBlock.of("$T.writeTimestamp(out, $L)", codecs, value);
+        if (typeName.equals(ClassName.get(Date.class)) || typeName.equals(ClassName.get(java.sql.Date.class))
+                || typeName.equals(ClassName.get(java.sql.Time.class)))
+            return CodeBlock.of("$T.writeVarLong(out, $L.getTime())", codecs, value);
+        return CodeBlock.of("$T.writeObject(out, $L)", codecs, value);
+    }
+
+    /**
+     * 读取非VO值的表达式
+     */
+    private CodeBlock getValueReader(VoModel.FieldModel voField) {
+        ClassName codecs = ClassName.get(BinaryCodecs.class);
+        TypeName typeName = voField.getTypeName().isBoxedPrimitive() ? voField.getTypeName().unbox() : voField.getTypeName();
+        if (typeName.equals(TypeName.BOOLEAN)) return CodeBlock.of("in.readBoolean()");
+        if (typeName.equals(TypeName.BYTE)) return CodeBlock.of("in.readByte()");
+        if (typeName.equals(TypeName.FLOAT)) return CodeBlock.of("in.readFloat()");
+        if (typeName.equals(TypeName.DOUBLE)) return CodeBlock.of("in.readDouble()");
+        if (typeName.equals(TypeName.LONG)) return CodeBlock.of("$T.readVarLong(in)", codecs);
+        if (typeName.isPrimitive()) return CodeBlock.of("($T) $T.readVarLong(in)", typeName, codecs);
+        if (typeName.equals(ClassName.get(String.class))) return CodeBlock.of("$T.readString(in)", codecs);
+        if (voField.isEnumType()) return CodeBlock.of("$T.valueOf($T.readString(in))", typeName, codecs);
+        if (typeName.equals(ClassName.get(java.sql.Timestamp.class))) return CodeBlock.of("$T.readTimestamp(in)", codecs);
+        if (typeName.equals(ClassName.get(Date.class)) || typeName.equals(ClassName.get(java.sql.Date.class))
+                || typeName.equals(ClassName.get(java.sql.Time.class)))
+            return CodeBlock.of("new $T($T.readVarLong(in))", typeName, codecs);
+        return CodeBlock.of("($T) $T.readObject(in)", typeName, codecs);
+    }
+
+    /**
+     * 32位FNV-1a哈希,用于生成结构哈希,结果只取决于输入,不同JVM上一致
+     */
+    private static int fnv1a(String value) {
+        int hash = 0x811c9dc5;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x01000193;
+        }
+        return hash;
+    }
+
+    /**
+     * 字段在掩码中对应的常量名称
+     */
+    private String getMaskConstant(VoModel.FieldModel voField) {
+        return "FIELD_" + String.join("_", StringUtils.splitByCharacterTypeCamelCase(voField.getName())).toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * 添加统计字段和负责计数、采样计时的{@code from}方法
+     *
+     * @param voBuilder VO类型声明
+     * @param voModel   VO数据
+     */
+    private void addMetrics(TypeSpec.Builder voBuilder, VoModel voModel) {
+        ClassName voClass = voModel.getVoClass();
+        voBuilder.addField(FieldSpec.builder(VoMetrics.class, METRICS_FIELD, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("$T.register($T.class)", VoMetricsRegistry.class, voClass)
+                .build());
         voBuilder.addMethod(MethodSpec.methodBuilder("from").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                .returns(ClassName.get(packageName, className))
-                .addParameter(ClassName.bestGuess(element.asType().toString()), "domain")
-                .addStatement(fromMethodReturnBuilder.toString(),
-                        ClassName.bestGuess(Optional.class.getName()),
-                        ClassName.bestGuess(element.asType().toString()),
-                        ClassName.get(packageName, className))
+                .returns(voClass)
+                .addParameter(voModel.getDomainClass(), "domain")
+                .addStatement("boolean sampled = $L.sample()", METRICS_FIELD)
+                .addStatement("long start = sampled ? System.nanoTime() : 0L")
+                .addStatement("$T vo = $L(domain)", voClass, voModel.getCacheSize() > 0 ? "cachedFrom" : "mapFrom")
+                .addStatement("$L.recordCall(sampled, start)", METRICS_FIELD)
+                .addStatement("return vo")
+                .build());
+    }
+
+    /**
+     * 添加VO缓存和先查找缓存的{@code from},同时记录统计时为私有的{@code cachedFrom},由记录统计的{@code from}调用
+     * <p>
+     * 实体的标识或版本为空(尚未保存)时不使用缓存
+     *
+     * @param voBuilder VO类型声明
+     * @param voModel   VO数据
+     */
+    private void addCache(TypeSpec.Builder voBuilder, VoModel voModel) {
+        ClassName voClass = voModel.getVoClass();
+        ParameterizedTypeName cacheType = ParameterizedTypeName.get(ClassName.get(VoCache.class), voClass);
+        voBuilder.addField(FieldSpec.builder(cacheType, CACHE_FIELD, Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .addJavadoc("以实体的标识和版本为键的VO缓存,可以读取命中次数或在实体删除时移除\n")
+                .initializer("new $T<>($L)", VoCache.class, voModel.getCacheSize())
+                .build());
+        VoModel.PathSegment id = voModel.getCacheId();
+        VoModel.PathSegment version = voModel.getCacheVersion();
+        MethodSpec.Builder fromBuilder = MethodSpec.methodBuilder(voModel.isMetrics() ? "cachedFrom" : "from")
+                .addModifiers(voModel.isMetrics() ? Modifier.PRIVATE : Modifier.PUBLIC, Modifier.STATIC)
+                .returns(voClass)
+                .addParameter(voModel.getDomainClass(), "domain")
+                .addStatement("if (domain == null) return mapFrom(domain)")
+                .addStatement("$T id = domain.$L()", id.getTypeName(), id.getReadMethodName())
+                .addStatement("$T version = domain.$L()", version.getTypeName(), version.getReadMethodName());
+        List<String> unsaved = new ArrayList<>();
+        //基本类型的标识为0时实体尚未保存,不同的新实体会共用同一个键
+        if (!id.getTypeName().isPrimitive()) unsaved.add("id == null");
+        else if (!id.getTypeName().equals(TypeName.BOOLEAN)) unsaved.add("id == 0");
+        if (!version.getTypeName().isPrimitive()) unsaved.add("version == null");
+        if (!unsaved.isEmpty())
+            fromBuilder.addStatement("if ($L) return mapFrom(domain)", String.join(" || ", unsaved));
+        voBuilder.addMethod(fromBuilder
+                .addStatement("$T vo = $L.get(id, version)", voClass, CACHE_FIELD)
+                .beginControlFlow("if (vo == null)")
+                .addStatement("vo = mapFrom(domain)")
+                .addStatement("$L.put(id, version, vo)", CACHE_FIELD)
+                .endControlFlow()
+                .addStatement("return vo")
+                .build());
+    }
+
+    /**
+     * 添加只查询VO所需列的JPQL和从查询结果创建VO的方法
+     * <p>
+     * 路径表达式经过的每个关联都{@code left join}一次,相同的前缀共用一个别名,关联为空时该行仍然返回,对应字段取缺省值;
+     * 嵌入对象不能join,直接使用{@code e.address.city}这样的路径
+     *
+     * @param voBuilder VO类型声明
+     * @param voModel   VO数据
+     */
+    private void addProjection(TypeSpec.Builder voBuilder, VoModel voModel) {
+        ClassName voClass = voModel.getVoClass();
+        ClassName tupleClass = ClassName.get(Tuple.class);
+        Map<String, String> joinAliases = new LinkedHashMap<>();
+        StringBuilder joins = new StringBuilder();
+        List<String> columns = new ArrayList<>();
+        boolean immutable = voModel.getLayout() == VO.Layout.IMMUTABLE;
+        CodeBlock.Builder fromTupleBuilder = CodeBlock.builder().add(immutable ? "return new $T(" : "return $T.builder()", voClass).indent();
+        for (VoModel.FieldModel voField : voModel.getFields()) {
+            if (immutable && voField != voModel.getFields().get(0))
+                fromTupleBuilder.add(",");
+            if (!voField.isProjectable()) {
+                if (immutable) //不可变VO的构造方法需要所有字段,不能查询的字段为null
+                    fromTupleBuilder.add("\nnull");
+                continue;
+            }
+            String owner = PROJECTION_ROOT_ALIAS;
+            List<VoModel.PathSegment> path = voField.getPath();
+            for (int i = 0; i < path.size() - 1; i++) {
+                String joinPath = owner + "." + getPropertyName(path.get(i));
+                if (path.get(i).isEmbedded()) {
+                    owner = joinPath;
+                    continue;
+                }
+                String alias = joinAliases.get(joinPath);
+                if (Objects.isNull(alias)) {
+                    alias = "j" + (joinAliases.size() + 1);
+                    joinAliases.put(joinPath, alias);
+                    joins.append(" left join ").append(joinPath).append(" ").append(alias);
+                }
+                owner = alias;
+            }
+            int column = columns.size();
+            columns.add(owner + "." + getPropertyName(path.get(path.size() - 1)));
+            TypeName typeName = voField.getTypeName();
+            CodeBlock value = typeName.isPrimitive() ?
+                    CodeBlock.of("tuple.get($L) == null ? $L : ($T) tuple.get($L)", column, path.get(path.size() - 1).getDefaultValue(), typeName.box(), column) :
+                    CodeBlock.of("($T) tuple.get($L)", typeName, column);
+            if (immutable)
+                fromTupleBuilder.add("\n$L", value);
+            else
+                fromTupleBuilder.add("\n.$L($L)", voField.getName(), value);
+        }
+        fromTupleBuilder.add(immutable ? ");\n" : "\n.build();\n").unindent();
+        String query = "select " + String.join(", ", columns) + " from " + voModel.getEntityName() + " " + PROJECTION_ROOT_ALIAS + joins;
+
+        voBuilder.addField(FieldSpec.builder(String.class, "PROJECTION_QUERY", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .addJavadoc("只查询VO所需列的JPQL,以{@link $T}为结果类型执行后用{@link #fromTuple}转换,\n可以在末尾追加以$L为实体别名的where和order by子句\n", tupleClass, PROJECTION_ROOT_ALIAS)
+                .initializer("$S", query)
+                .build());
+        voBuilder.addMethod(MethodSpec.methodBuilder("fromTuple").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(voClass)
+                .addParameter(tupleClass, "tuple")
+                .addCode(fromTupleBuilder.build())
+                .build());
+        voBuilder.addMethod(MethodSpec.methodBuilder("fromTuples").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(ParameterizedTypeName.get(ClassName.get(List.class), voClass))
+                .addParameter(ParameterizedTypeName.get(ClassName.get(List.class), tupleClass), "tuples")
+                .addStatement("$T<$T> result = new $T<>(tuples.size())", List.class, voClass, ArrayList.class)
+                .beginControlFlow("for ($T tuple : tuples)", tupleClass)
+                .addStatement("result.add(fromTuple(tuple))")
+                .endControlFlow()
+                .addStatement("return result")
+                .build());
+    }
+
+    /**
+     * 添加按VO的实体图创建{@link EntityGraph}的方法,叶子节点作为属性节点,有子节点的作为子图
+     *
+     * @param voBuilder VO类型声明
+     * @param voModel   VO数据
+     */
+    private void addEntityGraph(TypeSpec.Builder voBuilder, VoModel voModel) {
+        TypeName graphType = ParameterizedTypeName.get(ClassName.get(EntityGraph.class), voModel.getDomainClass());
+        CodeBlock.Builder codeBuilder = CodeBlock.builder()
+                .addStatement("$T graph = entityManager.createEntityGraph($T.class)", graphType, voModel.getDomainClass());
+        appendGraphNodes(voModel.getFetchGraph(), "graph", "", codeBuilder);
+        voBuilder.addMethod(MethodSpec.methodBuilder("createEntityGraph").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addJavadoc("创建加载该VO读取的所有关联的实体图,作为{@code javax.persistence.fetchgraph}或{@code javax.persistence.loadgraph}提示传给查询,\n在一次查询中加载映射需要的关联\n")
+                .returns(graphType)
+                .addParameter(EntityManager.class, "entityManager")
+                .addCode(codeBuilder.build())
+                .addStatement("return graph")
+                .build());
+    }
+
+    private void appendGraphNodes(VoModel.GraphNode node, String graphVariable, String path, CodeBlock.Builder codeBuilder) {
+        List<String> attributeNodes = node.getChildren().entrySet().stream()
+                .filter(o -> o.getValue().getChildren().isEmpty())
+                .map(o -> "\"" + o.getKey() + "\"")
+                .collect(Collectors.toList());
+        if (!attributeNodes.isEmpty())
+            codeBuilder.addStatement("$L.addAttributeNodes($L)", graphVariable, String.join(", ", attributeNodes));
+        node.getChildren().forEach((name, child) -> {
+            if (child.getChildren().isEmpty()) return;
+            String childPath = path.isEmpty() ? name : path + "_" + name;
+            String childVariable = childPath + "Graph";
+            codeBuilder.addStatement("$T<?> $L = $L.addSubgraph($S)", Subgraph.class, childVariable, graphVariable, name);
+            appendGraphNodes(child, childVariable, childPath, codeBuilder);
+        });
+    }
+
+    /**
+     * 添加不创建VO直接把实体类写为JSON的方法,字段按{@code @JSONField}的{@code ordinal}和名称排序,与fastjson的默认顺序一致
+     * <p>
+     * 值通过判空的getter链读取,非基本类型的值为{@code null}时不输出该字段
+     *
+     * @param voBuilder VO类型声明
+     * @param voModel   VO数据
+     */
+    private void addJsonWriter(TypeSpec.Builder voBuilder, VoModel voModel) {
+        ClassName jsonWriters = ClassName.get(JsonWriters.class);
+        CodeBlock.Builder getterChainBuilder = CodeBlock.builder();
+        CodeBlock.Builder writeBuilder = CodeBlock.builder();
+        Map<String, String> pathVariables = new HashMap<>();
+        voModel.getFields().stream()
+                .filter(VoModel.FieldModel::isJsonSerialize)
+                .sorted(Comparator.comparingInt(VoModel.FieldModel::getJsonOrdinal).thenComparing(VoModel.FieldModel::getJsonName))
+                .forEach(voField -> {
+                    String variable = appendGetterChain(voField.getPath(), voField.getPath().size() - 1, getterChainBuilder, pathVariables);
+                    TypeName valueType = voField.getPath().get(voField.getPath().size() - 1).getTypeName();
+                    boolean primitive = valueType.isPrimitive();
+                    if (!primitive)
+                        writeBuilder.beginControlFlow("if ($L != null)", variable);
+                    writeBuilder.addStatement("out.append(separator).append($S)", "\"" + voField.getJsonName() + "\":")
+                            .addStatement("separator = ','");
+                    if (Objects.nonNull(voField.getUseVo())) {
+                        ClassName useVoClass = ClassName.bestGuess(voField.getUseVo());
+                        if ("Map".equals(voField.getCollectionType()))
+                            writeBuilder.addStatement("$T.writeMap(out, $L, $T::writeJson)", jsonWriters, variable, useVoClass);
+                        else if (voField.isArray())
+                            writeBuilder.addStatement("$T.writeArray(out, $T.asList($L).iterator(), $T::writeJson)", jsonWriters, Arrays.class, variable, useVoClass);
+                        else if (voField.isCollection())
+                            writeBuilder.addStatement("$T.writeArray(out, $L$L, $T::writeJson)", jsonWriters, variable,
+                                    "Iterator".equals(voField.getCollectionType()) ? "" : ".iterator()", useVoClass);
+                        else writeBuilder.addStatement("$T.writeJson($L, out)", useVoClass, variable);
+                    } else if (valueType.equals(ClassName.get(String.class)))
+                        writeBuilder.addStatement("$T.writeString(out, $L)", jsonWriters, variable);
+                    else if (primitive || Objects.isNull(voField.getJsonFormat()))
+                        writeBuilder.addStatement("$T.writeValue(out, $L)", jsonWriters, variable);
+                    else
+                        writeBuilder.addStatement("$T.writeValue(out, $L, $S)", jsonWriters, variable, voField.getJsonFormat());
+                    if (!primitive)
+                        writeBuilder.endControlFlow();
+                });
+
+        voBuilder.addMethod(MethodSpec.methodBuilder("writeJson").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addJavadoc("不创建VO,把实体类直接写为与该VO相同的JSON\n")
+                .addParameter(voModel.getDomainClass(), "domain")
+                .addParameter(Appendable.class, "out")
+                .addException(IOException.class)
+                .beginControlFlow("if (domain == null)")
+                .addStatement("out.append($S)", "null")
+                .addStatement("return")
+                .endControlFlow()
+                .addCode(getterChainBuilder.build())
+                .addStatement("char separator = '{'")
+                .addCode(writeBuilder.build())
+                .addStatement("if (separator == '{') out.append('{')")
+                .addStatement("out.append('}')")
+                .build());
+        voBuilder.addMethod(MethodSpec.methodBuilder("writeJson").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addJavadoc("不创建VO,把实体类直接以UTF-8写为与该VO相同的JSON,写入后刷新但不关闭输出流\n")
+                .addParameter(voModel.getDomainClass(), "domain")
+                .addParameter(OutputStream.class, "out")
+                .addException(IOException.class)
+                .addStatement("$T writer = new $T(out)", Utf8Output.class, Utf8Output.class)
+                .addStatement("writeJson(domain, writer)")
+                .addStatement("writer.flush()")
+                .build());
+    }
+
+    /**
+     * 为ExtJS表格VO添加按列存放的{@code Batch},每列一个数组,基本类型的列使用基本类型数组,带类型参数的列使用{@link List}
+     * <p>
+     * 列在一次遍历中填充,{@code writeJson}输出{@code {"rowCount":n,"columns":{"字段":[...]}}},每个字段名称只出现一次,
+     * {@code @UseVo}字段需要逐行创建VO,不包含在{@code Batch}中
+     *
+     * @param voBuilder VO类型声明
+     * @param voModel   VO数据
+     */
+    private void addExtjsGridBatch(TypeSpec.Builder voBuilder, VoModel voModel) {
+        ClassName jsonWriters = ClassName.get(JsonWriters.class);
+        ClassName batchClass = voModel.getVoClass().nestedClass("Batch");
+        TypeSpec.Builder batchBuilder = TypeSpec.classBuilder(batchClass)
+                .addJavadoc("按列存放的一批{@link $T},每列一个数组,基本类型的列使用基本类型数组\n", voModel.getVoClass())
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addAnnotation(Getter.class)
+                .addField(int.class, "rowCount", Modifier.PRIVATE, Modifier.FINAL);
+        MethodSpec.Builder constructorBuilder = MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE)
+                .addParameter(int.class, "rowCount")
+                .addStatement("this.rowCount = rowCount");
+        CodeBlock.Builder getterChainBuilder = CodeBlock.builder();
+        CodeBlock.Builder fillBuilder = CodeBlock.builder();
+        Map<String, String> pathVariables = new HashMap<>();
+        List<VoModel.FieldModel> columns = voModel.getFields().stream()
+                .filter(o -> Objects.isNull(o.getUseVo()))
+                .sorted(Comparator.comparingInt(VoModel.FieldModel::getJsonOrdinal).thenComparing(VoModel.FieldModel::getJsonName))
+                .collect(Collectors.toList());
+        for (VoModel.FieldModel column : columns) {
+            String variable = appendGetterChain(column.getPath(), column.getPath().size() - 1, getterChainBuilder, pathVariables);
+            TypeName typeName = column.getTypeName();
+            if (typeName instanceof ParameterizedTypeName) {
+                batchBuilder.addField(ParameterizedTypeName.get(ClassName.get(List.class), typeName), column.getName(), Modifier.PRIVATE, Modifier.FINAL);
+                constructorBuilder.addStatement("this.$L = new $T<>(rowCount)", column.getName(), ArrayList.class);
+                fillBuilder.addStatement("batch.$L.add($L)", column.getName(), column.copyExpression(variable));
+            } else {
+                batchBuilder.addField(ArrayTypeName.of(typeName), column.getName(), Modifier.PRIVATE, Modifier.FINAL);
+                //数组列的元素本身是数组时,维度写在行数之后
+                TypeName componentType = typeName;
+                StringBuilder dimensions = new StringBuilder();
+                while (componentType instanceof ArrayTypeName) {
+                    componentType = ((ArrayTypeName) componentType).componentType;
+                    dimensions.append("[]");
+                }
+                constructorBuilder.addStatement("this.$L = new $T[rowCount]$L", column.getName(), componentType, dimensions);
+                fillBuilder.addStatement("batch.$L[row] = $L", column.getName(), column.copyExpression(variable));
+            }
+        }
+        batchBuilder.addMethod(constructorBuilder.build());
+
+        batchBuilder.addMethod(MethodSpec.methodBuilder("from").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(batchClass)
+                .addParameter(ParameterizedTypeName.get(ClassName.get(Collection.class), voModel.getDomainClass()), "collection")
+                .addStatement("$T batch = new $T(collection.size())", batchClass, batchClass)
+                .addStatement("int row = 0")
+                .beginControlFlow("for ($T domain : collection)", voModel.getDomainClass())
+                .addCode(getterChainBuilder.build())
+                .addCode(fillBuilder.build())
+                .addStatement("row++")
+                .endControlFlow()
+                .addStatement("return batch")
                 .build());
 
+        MethodSpec.Builder writeJsonBuilder = MethodSpec.methodBuilder("writeJson").addModifiers(Modifier.PUBLIC)
+                .addJavadoc("以列的形式写为JSON,每个字段名称只输出一次\n")
+                .addParameter(Appendable.class, "out")
+                .addException(IOException.class)
+                .addStatement("out.append($S).append($T.toString(rowCount)).append($S)", "{\"rowCount\":", Integer.class, ",\"columns\":{");
+        boolean first = true;
+        for (VoModel.FieldModel column : columns) {
+            if (!column.isJsonSerialize()) continue;
+            writeJsonBuilder.addStatement("out.append($S)", (first ? "" : ",") + "\"" + column.getJsonName() + "\":[");
+            first = false;
+            boolean list = column.getTypeName() instanceof ParameterizedTypeName;
+            writeJsonBuilder.beginControlFlow("for (int i = 0; i < rowCount; i++)")
+                    .addStatement("if (i > 0) out.append(',')");
+            String value = column.getName() + (list ? ".get(i)" : "[i]");
+            if (column.getTypeName().equals(ClassName.get(String.class)))
+                writeJsonBuilder.addStatement("$T.writeString(out, $L)", jsonWriters, value);
+            else if (column.getTypeName().isPrimitive() || Objects.isNull(column.getJsonFormat()))
+                writeJsonBuilder.addStatement("$T.writeValue(out, $L)", jsonWriters, value);
+            else
+                writeJsonBuilder.addStatement("$T.writeValue(out, $L, $S)", jsonWriters, value, column.getJsonFormat());
+            writeJsonBuilder.endControlFlow()
+                    .addStatement("out.append(']')");
+        }
+        batchBuilder.addMethod(writeJsonBuilder.addStatement("out.append($S)", "}}").build());
+
+        voBuilder.addType(batchBuilder.build());
+    }
+
+    private String getPropertyName(VoModel.PathSegment segment) {
+        String expression = segment.getExpression();
+        return expression.substring(expression.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * 记录批量映射的语句,没有打开统计时为空
+     *
+     * @param voModel VO数据
+     * @param size    元素数量表达式
+     * @return 代码块
+     */
+    private CodeBlock recordBatch(VoModel voModel, String size) {
+        return voModel.isMetrics() ? CodeBlock.builder().addStatement("$L.recordBatch($L)", METRICS_FIELD, size).build() : CodeBlock.of("");
+    }
+
+    /**
+     * 添加批量映射方法,结果集合按输入的长度预先分配容量,逐个元素调用{@code from}
+     *
+     * @param voBuilder VO类型声明
+     * @param voModel   VO数据
+     */
+    private void addBatchMethods(TypeSpec.Builder voBuilder, VoModel voModel) {
+        ClassName voClass = voModel.getVoClass();
+        ClassName domainClass = voModel.getDomainClass();
+        ClassName collectionClass = ClassName.get(Collection.class);
+        ClassName listClass = ClassName.get(List.class);
+        ClassName arrayListClass = ClassName.get(ArrayList.class);
 
         voBuilder.addMethod(MethodSpec.methodBuilder("fromCollection").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                .returns(ParameterizedTypeName.get(ClassName.bestGuess("java.util.Collection"), ClassName.get(packageName, className)))
-                .addParameter(ParameterizedTypeName.get(ClassName.bestGuess("java.util.Collection"), ClassName.bestGuess(element.asType().toString())), "collection")
-                .addStatement("return collection.stream().map($T::from).collect($T.toList())", ClassName.get(packageName, className), ClassName.bestGuess("java.util.stream.Collectors"))
+                .returns(ParameterizedTypeName.get(collectionClass, voClass))
+                .addParameter(ParameterizedTypeName.get(collectionClass, domainClass), "collection")
+                .addCode(recordBatch(voModel, "collection.size()"))
+                .addStatement("$T<$T> result = new $T<>(collection.size())", listClass, voClass, arrayListClass)
+                .beginControlFlow("for ($T domain : collection)", domainClass)
+                .addStatement("result.add(from(domain))")
+                .endControlFlow()
+                .addStatement("return result")
                 .build());
 
+        TypeVariableName collectionType = TypeVariableName.get("C", ParameterizedTypeName.get(collectionClass, voClass));
+        voBuilder.addMethod(MethodSpec.methodBuilder("fromCollection").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addTypeVariable(collectionType)
+                .returns(collectionType)
+                .addParameter(ParameterizedTypeName.get(collectionClass, domainClass), "collection")
+                .addParameter(ParameterizedTypeName.get(ClassName.get(IntFunction.class), collectionType), "factory")
+                .addCode(recordBatch(voModel, "collection.size()"))
+                .addStatement("$T result = factory.apply(collection.size())", collectionType)
+                .beginControlFlow("for ($T domain : collection)", domainClass)
+                .addStatement("result.add(from(domain))")
+                .endControlFlow()
+                .addStatement("return result")
+                .build());
 
         voBuilder.addMethod(MethodSpec.methodBuilder("fromList").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                .returns(ParameterizedTypeName.get(ClassName.bestGuess("java.util.List"), ClassName.get(packageName, className)))
-                .addParameter(ParameterizedTypeName.get(ClassName.bestGuess("java.util.List"), ClassName.bestGuess(element.asType().toString())), "list")
-                .addStatement("return list.stream().map($T::from).collect($T.toList())", ClassName.get(packageName, className), ClassName.bestGuess("java.util.stream.Collectors"))
+                .returns(ParameterizedTypeName.get(listClass, voClass))
+                .addParameter(ParameterizedTypeName.get(listClass, domainClass), "list")
+                .addStatement("int size = list.size()")
+                .addCode(recordBatch(voModel, "size"))
+                .addStatement("$T<$T> result = new $T<>(size)", listClass, voClass, arrayListClass)
+                .beginControlFlow("if (list instanceof $T)", RandomAccess.class)
+                .beginControlFlow("for (int i = 0; i < size; i++)")
+                .addStatement("result.add(from(list.get(i)))")
+                .endControlFlow()
+                .nextControlFlow("else")
+                .beginControlFlow("for ($T domain : list)", domainClass)
+                .addStatement("result.add(from(domain))")
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("return result")
                 .build());
 
-        TypeSpec validationGroupsInterface = voBuilder.addModifiers(Modifier.PUBLIC)
+        addContainerMethods(voBuilder, voModel, false);
+
+        if (voModel.getParallelThreshold() > 0)
+            voBuilder.addMethod(MethodSpec.methodBuilder("fromListParallel").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                    .returns(ParameterizedTypeName.get(listClass, voClass))
+                    .addParameter(ParameterizedTypeName.get(listClass, domainClass), "list")
+                    .addStatement("int size = list.size()")
+                    .beginControlFlow("if (size < $L)", voModel.getParallelThreshold())
+                    .addStatement("return fromList(list)")
+                    .endControlFlow()
+                    .addCode(recordBatch(voModel, "size"))
+                    .addStatement("$T<$T> source = list instanceof $T ? list : new $T<>(list)", listClass, domainClass, RandomAccess.class, arrayListClass)
+                    .addStatement("$T[] result = new $T[size]", voClass, voClass)
+                    .addStatement("$T.range(0, size).parallel().forEach(i -> result[i] = from(source.get(i)))", IntStream.class)
+                    .addStatement("return new $T<>($T.asList(result))", arrayListClass, Arrays.class)
+                    .build());
+    }
+
+    /**
+     * 添加惰性映射方法,只有在消费结果时才逐个元素调用{@code from},不会把输入全部读入内存
+     *
+     * @param voBuilder VO类型声明
+     * @param voModel   VO数据
+     */
+    private void addStreamingMethods(TypeSpec.Builder voBuilder, VoModel voModel) {
+        ClassName voClass = voModel.getVoClass();
+        ClassName domainClass = voModel.getDomainClass();
+        ClassName streamClass = ClassName.get(Stream.class);
+        ClassName iteratorClass = ClassName.get(Iterator.class);
+        ClassName iterableClass = ClassName.get(Iterable.class);
+
+        voBuilder.addMethod(MethodSpec.methodBuilder("fromStream").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(ParameterizedTypeName.get(streamClass, voClass))
+                .addParameter(ParameterizedTypeName.get(streamClass, domainClass), "stream")
+                .addStatement("return stream.map($T::from)", voClass)
+                .build());
+
+        TypeSpec iterator = TypeSpec.anonymousClassBuilder("")
+                .addSuperinterface(ParameterizedTypeName.get(iteratorClass, voClass))
+                .addMethod(MethodSpec.methodBuilder("hasNext").addAnnotation(Override.class).addModifiers(Modifier.PUBLIC)
+                        .returns(TypeName.BOOLEAN)
+                        .addStatement("return iterator.hasNext()")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("next").addAnnotation(Override.class).addModifiers(Modifier.PUBLIC)
+                        .returns(voClass)
+                        .addStatement("return from(iterator.next())")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("remove").addAnnotation(Override.class).addModifiers(Modifier.PUBLIC)
+                        .addStatement("iterator.remove()")
+                        .build())
                 .build();
+        voBuilder.addMethod(MethodSpec.methodBuilder("fromIterator").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(ParameterizedTypeName.get(iteratorClass, voClass))
+                .addParameter(ParameterizedTypeName.get(iteratorClass, domainClass), "iterator")
+                .addStatement("return $L", iterator)
+                .build());
 
-        JavaFile javaFile = JavaFile.builder(packageName, validationGroupsInterface).
-                build();
+        voBuilder.addMethod(MethodSpec.methodBuilder("fromIterable").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(ParameterizedTypeName.get(iterableClass, voClass))
+                .addParameter(ParameterizedTypeName.get(iterableClass, domainClass), "iterable")
+                .addStatement("return () -> fromIterator(iterable.iterator())")
+                .build());
+    }
+
+    /**
+     * 添加使用{@link MappingContext}的映射方法,同一个上下文中的同一个实体只映射一次,嵌套的{@code @UseVo}字段也使用同一个上下文
+     * <p>
+     * VO先通过无参构造方法创建并放入上下文,再给字段赋值,因此实体之间的循环引用会在回到已经映射的实体处停止。
+     * 实体或集合为{@code null}时返回{@code null}
+     *
+     * @param voBuilder VO类型声明
+     * @param voModel   VO数据
+     */
+    private void addContextMethods(TypeSpec.Builder voBuilder, VoModel voModel) {
+        ClassName voClass = voModel.getVoClass();
+        ClassName domainClass = voModel.getDomainClass();
+        ClassName contextClass = ClassName.get(MappingContext.class);
+        ClassName listClass = ClassName.get(List.class);
+        ClassName arrayListClass = ClassName.get(ArrayList.class);
+
+        boolean immutable = voModel.getLayout() == VO.Layout.IMMUTABLE;
+        CodeBlock.Builder getterChainBuilder = CodeBlock.builder();
+        CodeBlock.Builder assignBuilder = CodeBlock.builder();
+        List<CodeBlock> values = new ArrayList<>();
+        Map<String, String> pathVariables = new HashMap<>();
+        for (VoModel.FieldModel voField : voModel.getFields()) {
+            String variable = appendGetterChain(voField.getPath(), voField.getPath().size() - 1, getterChainBuilder, pathVariables);
+            CodeBlock value = Objects.nonNull(voField.getUseVo()) ?
+                    CodeBlock.of("$T.from$L($L, context)", ClassName.bestGuess(voField.getUseVo()),
+                            voField.isCollection() ? voField.getCollectionType() : "", variable) :
+                    CodeBlock.of("$L", voField.copyExpression(variable));
+            values.add(value);
+            assignBuilder.addStatement("vo.$L = $L", voField.getName(), value);
+        }
+        MethodSpec.Builder fromBuilder = MethodSpec.methodBuilder("from").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addJavadoc("使用映射上下文创建VO,同一个上下文中的同一个实体只映射一次,实体为{@code null}时返回{@code null}\n")
+                .returns(voClass)
+                .addParameter(domainClass, "domain")
+                .addParameter(contextClass, "context")
+                .addStatement("if (domain == null) return null")
+                .addStatement("$T vo = context.get($T.class, domain)", voClass, voClass)
+                .addStatement("if (vo != null) return vo");
+        if (immutable) //不可变VO只能在嵌套字段映射完成后创建,循环引用处的字段为null
+            fromBuilder.addStatement("if (!context.enter($T.class, domain)) return null", voClass);
+        else
+            fromBuilder.addStatement("vo = new $T()", voClass)
+                    .addStatement("context.put($T.class, domain, vo)", voClass);
+        if (voModel.isMetrics())
+            fromBuilder.addStatement("$L.recordCall(false, 0L)", METRICS_FIELD);
+        fromBuilder.addCode(getterChainBuilder.build());
+        if (immutable)
+            fromBuilder.addStatement("vo = new $T($L)", voClass, CodeBlock.join(values, ", "))
+                    .addStatement("context.put($T.class, domain, vo)", voClass);
+        else
+            fromBuilder.addCode(assignBuilder.build());
+        voBuilder.addMethod(fromBuilder
+                .addStatement("return vo")
+                .build());
+
+        voBuilder.addMethod(MethodSpec.methodBuilder("fromCollection").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(ParameterizedTypeName.get(ClassName.get(Collection.class), voClass))
+                .addParameter(ParameterizedTypeName.get(ClassName.get(Collection.class), domainClass), "collection")
+                .addParameter(contextClass, "context")
+                .addStatement("if (collection == null) return null")
+                .addStatement("$T<$T> result = new $T<>(collection.size())", listClass, voClass, arrayListClass)
+                .beginControlFlow("for ($T domain : collection)", domainClass)
+                .addStatement("result.add(from(domain, context))")
+                .endControlFlow()
+                .addStatement("return result")
+                .build());
 
-        System.out.println("创建值包装对象:" + className);
+        voBuilder.addMethod(MethodSpec.methodBuilder("fromList").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(ParameterizedTypeName.get(listClass, voClass))
+                .addParameter(ParameterizedTypeName.get(listClass, domainClass), "list")
+                .addParameter(contextClass, "context")
+                .addStatement("if (list == null) return null")
+                .addStatement("int size = list.size()")
+                .addStatement("$T<$T> result = new $T<>(size)", listClass, voClass, arrayListClass)
+                .beginControlFlow("if (list instanceof $T)", RandomAccess.class)
+                .beginControlFlow("for (int i = 0; i < size; i++)")
+                .addStatement("result.add(from(list.get(i), context))")
+                .endControlFlow()
+                .nextControlFlow("else")
+                .beginControlFlow("for ($T domain : list)", domainClass)
+                .addStatement("result.add(from(domain, context))")
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("return result")
+                .build());
 
-        javaFile.writeTo(_filer);
+        ClassName streamClass = ClassName.get(Stream.class);
+        voBuilder.addMethod(MethodSpec.methodBuilder("fromStream").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(ParameterizedTypeName.get(streamClass, voClass))
+                .addParameter(ParameterizedTypeName.get(streamClass, domainClass), "stream")
+                .addParameter(contextClass, "context")
+                .addStatement("return stream == null ? null : stream.map(domain -> from(domain, context))")
+                .build());
 
+        ClassName iteratorClass = ClassName.get(Iterator.class);
+        TypeSpec iterator = TypeSpec.anonymousClassBuilder("")
+                .addSuperinterface(ParameterizedTypeName.get(iteratorClass, voClass))
+                .addMethod(MethodSpec.methodBuilder("hasNext").addAnnotation(Override.class).addModifiers(Modifier.PUBLIC)
+                        .returns(TypeName.BOOLEAN)
+                        .addStatement("return iterator.hasNext()")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("next").addAnnotation(Override.class).addModifiers(Modifier.PUBLIC)
+                        .returns(voClass)
+                        .addStatement("return from(iterator.next(), context)")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("remove").addAnnotation(Override.class).addModifiers(Modifier.PUBLIC)
+                        .addStatement("iterator.remove()")
+                        .build())
+                .build();
+        voBuilder.addMethod(MethodSpec.methodBuilder("fromIterator").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(ParameterizedTypeName.get(iteratorClass, voClass))
+                .addParameter(ParameterizedTypeName.get(iteratorClass, domainClass), "iterator")
+                .addParameter(contextClass, "context")
+                .addStatement("if (iterator == null) return null")
+                .addStatement("return $L", iterator)
+                .build());
+
+        ClassName iterableClass = ClassName.get(Iterable.class);
+        voBuilder.addMethod(MethodSpec.methodBuilder("fromIterable").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(ParameterizedTypeName.get(iterableClass, voClass))
+                .addParameter(ParameterizedTypeName.get(iterableClass, domainClass), "iterable")
+                .addParameter(contextClass, "context")
+                .addStatement("return iterable == null ? null : () -> fromIterator(iterable.iterator(), context)")
+                .build());
+
+        addContainerMethods(voBuilder, voModel, true);
+    }
+
+    /**
+     * 添加{@code fromSet}、{@code fromMap}和{@code fromArray},目标按输入的大小一次分配,
+     * {@link Set}和{@link Map}使用保持输入顺序的{@link LinkedHashSet}和{@link LinkedHashMap},{@link Map}只映射值。
+     * 输入为{@code null}时返回{@code null}
+     *
+     * @param voBuilder  VO类型声明
+     * @param voModel    VO数据
+     * @param contextual 是否生成使用{@link MappingContext}的版本
+     */
+    private void addContainerMethods(TypeSpec.Builder voBuilder, VoModel voModel, boolean contextual) {
+        ClassName voClass = voModel.getVoClass();
+        ClassName domainClass = voModel.getDomainClass();
+        String arguments = contextual ? ", context" : "";
+
+        ClassName setClass = ClassName.get(Set.class);
+        MethodSpec.Builder fromSetBuilder = MethodSpec.methodBuilder("fromSet").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(ParameterizedTypeName.get(setClass, voClass))
+                .addParameter(ParameterizedTypeName.get(setClass, domainClass), "set");
+        if (contextual) fromSetBuilder.addParameter(MappingContext.class, "context");
+        else fromSetBuilder.addCode(recordBatch(voModel, "set == null ? 0 : set.size()"));
+        voBuilder.addMethod(fromSetBuilder
+                .addStatement("if (set == null) return null")
+                .addStatement("$T<$T> result = new $T<>((int) (set.size() / 0.75f) + 1)", setClass, voClass, LinkedHashSet.class)
+                .beginControlFlow("for ($T domain : set)", domainClass)
+                .addStatement("result.add(from(domain$L))", arguments)
+                .endControlFlow()
+                .addStatement("return result")
+                .build());
+
+        ClassName mapClass = ClassName.get(Map.class);
+        TypeVariableName keyType = TypeVariableName.get("K");
+        MethodSpec.Builder fromMapBuilder = MethodSpec.methodBuilder("fromMap").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addTypeVariable(keyType)
+                .returns(ParameterizedTypeName.get(mapClass, keyType, voClass))
+                .addParameter(ParameterizedTypeName.get(mapClass, keyType, domainClass), "map");
+        if (contextual) fromMapBuilder.addParameter(MappingContext.class, "context");
+        else fromMapBuilder.addCode(recordBatch(voModel, "map == null ? 0 : map.size()"));
+        voBuilder.addMethod(fromMapBuilder
+                .addStatement("if (map == null) return null")
+                .addStatement("$T<$T, $T> result = new $T<>((int) (map.size() / 0.75f) + 1)", mapClass, keyType, voClass, LinkedHashMap.class)
+                .beginControlFlow("for ($T.Entry<$T, $T> entry : map.entrySet())", mapClass, keyType, domainClass)
+                .addStatement("result.put(entry.getKey(), from(entry.getValue()$L))", arguments)
+                .endControlFlow()
+                .addStatement("return result")
+                .build());
+
+        MethodSpec.Builder fromArrayBuilder = MethodSpec.methodBuilder("fromArray").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(ArrayTypeName.of(voClass))
+                .addParameter(ArrayTypeName.of(domainClass), "array");
+        if (contextual) fromArrayBuilder.addParameter(MappingContext.class, "context");
+        else fromArrayBuilder.addCode(recordBatch(voModel, "array == null ? 0 : array.length"));
+        voBuilder.addMethod(fromArrayBuilder
+                .addStatement("if (array == null) return null")
+                .addStatement("$T[] result = new $T[array.length]", voClass, voClass)
+                .beginControlFlow("for (int i = 0; i < array.length; i++)")
+                .addStatement("result[i] = from(array[i]$L)", arguments)
+                .endControlFlow()
+                .addStatement("return result")
+                .build());
+    }
+
+    /**
+     * 为路径表达式生成判空的getter链,每个路径前缀只读取一次并保存到局部变量中
+     * <p>
+     * 例如{@code address.city}会生成:
+     * <pre>
+     * Address address = domain == null ? null : domain.getAddress();
+     * String address_city = address == null ? null : address.getCity();
+     * </pre>
+     *
+     * @param path          路径上的每一段
+     * @param index         要读取的段的位置
+     * @param codeBuilder   用于接收局部变量声明的代码块
+     * @param pathVariables 已经生成的路径和局部变量名称的映射
+     * @return 保存该路径值的局部变量名称
+     */
+    private String appendGetterChain(List<VoModel.PathSegment> path, int index, CodeBlock.Builder codeBuilder, Map<String, String> pathVariables) {
+        VoModel.PathSegment segment = path.get(index);
+        String variable = pathVariables.get(segment.getExpression());
+        if (Objects.nonNull(variable)) return variable;
+        String ownerVariable = index == 0 ? "domain" : appendGetterChain(path, index - 1, codeBuilder, pathVariables);
+        variable = segment.getExpression().replace('.', '_');
+        while (RESERVED_VARIABLES.contains(variable) || pathVariables.containsValue(variable))
+            variable = "_" + variable;
+        codeBuilder.addStatement("$T $L = $L == null ? $L : $L.$L()", segment.getTypeName(), variable, ownerVariable,
+                segment.getDefaultValue(), ownerVariable, segment.getReadMethodName());
+        pathVariables.put(segment.getExpression(), variable);
+        return variable;
     }
 
     private void setFastJson(Element fieldElement, FieldSpec.Builder fieldSpecBuilder) {
         fieldElement.getAnnotationMirrors().stream().filter(o -> {
             return ArrayUtils.contains(new String[]{
-                    "com.alibaba.fastjson.annotation.JSONField"
+                    JSON_FIELD_ANNOTATION
             }, ((AnnotationMirror) o).getAnnotationType().toString());
         }).forEach(o -> {
             fieldSpecBuilder.addAnnotation(AnnotationSpec.get(o));
         });
     }
 
+    /**
+     * 读取字段上{@code @JSONField}显式指定的值,处理器不依赖fastjson,因此通过注解镜像读取
+     *
+     * @param fieldElement 字段元素
+     * @return 属性名称到值的映射,没有该注解时为空
+     */
+    private Map<String, Object> getJsonFieldValues(Element fieldElement) {
+        Map<String, Object> values = new HashMap<>();
+        fieldElement.getAnnotationMirrors().stream()
+                .filter(o -> JSON_FIELD_ANNOTATION.equals(o.getAnnotationType().toString()))
+                .forEach(o -> o.getElementValues().forEach((key, value) -> values.put(key.getSimpleName().toString(), value.getValue())));
+        return values;
+    }
 
     private void addFieldDoc(Element fieldElement, FieldSpec.Builder fieldSpecBuilder) {
         DbComment dbCommentAnnotation = fieldElement.getAnnotation(DbComment.class);
@@ -342,6 +2193,22 @@ public class VOAnnotationProcessor extends AbstractProcessor {
         }
     }
 
+    /**
+     * 本处理器识别的{@code -A}选项,以及Gradle动态增量处理器的类型:
+     * 生成汇总所有实体类的{@code VoMappers}或处理报告时为聚合型,否则为隔离型
+     *
+     * @return 选项名称集合
+     */
+    @Override
+    public Set<String> getSupportedOptions() {
+        Set<String> options = Sets.newHashSet(PARALLEL_OPTION, REPORT_OPTION, METRICS_OPTION, INDEX_OPTION, MAPPERS_OPTION);
+        Map<String, String> processorOptions = Objects.isNull(processingEnv) ? Collections.emptyMap() : processingEnv.getOptions();
+        boolean aggregating = StringUtils.isNotBlank(processorOptions.get(MAPPERS_OPTION))
+                || Boolean.parseBoolean(processorOptions.get(REPORT_OPTION));
+        options.add(aggregating ? GRADLE_AGGREGATING : GRADLE_ISOLATING);
+        return options;
+    }
+
     /**
      * 这里必须指定，这个注解处理器是注册给哪个注解的。注意，它的返回值是一个字符串的集合，包含本处理器想要处理的注解类型的合法全称
      *
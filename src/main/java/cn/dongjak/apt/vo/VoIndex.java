@@ -0,0 +1,137 @@
+package cn.dongjak.apt.vo;
+
+import lombok.Data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 一个实体类生成的所有VO的索引,写入到{@value #RESOURCE_PREFIX}加实体类全限定名的资源中并随jar发布,
+ * 下游模块处理引用了这些VO的{@code @UseVo}时直接读取索引,不再遍历上游实体类的元素
+ * <p>
+ * 每行以制表符分隔,第一列为行的类型:
+ * <pre>
+ * vo    VO类全限定名  场景名称  选项(逗号分隔)
+ * field 字段名称      字段类型  {@code @UseVo}指定的VO
+ * graph 实体图中的关联路径,只有打开了entityGraph的VO才有
+ * </pre>
+ * {@code field}和{@code graph}行属于它们之前最近的{@code vo}行
+ */
+class VoIndex {
+
+    static final String RESOURCE_PREFIX = "META-INF/dongjak-apt/vo-index/";
+
+    private static final String HEADER = "# dongjak-apt vo index v1";
+
+    static final String JSON_WRITER = "jsonWriter";
+
+    static final String ENTITY_GRAPH = "entityGraph";
+
+    static final String PROJECTION = "projection";
+
+    static final String METRICS = "metrics";
+
+    static final String MAPPING_CONTEXT = "mappingContext";
+
+    static final String FIELD_MASK = "fieldMask";
+
+    static final String DELTA = "delta";
+
+    static final String BINARY_CODEC = "binaryCodec";
+
+    static String resourceName(String entityClassName) {
+        return RESOURCE_PREFIX + entityClassName;
+    }
+
+    static String write(List<VoModel> voModels) {
+        StringBuilder builder = new StringBuilder(HEADER).append('\n');
+        for (VoModel voModel : voModels) {
+            List<String> options = new ArrayList<>();
+            options.add(voModel.getLayout().name());
+            options.add(voModel.getMappingMode().name());
+            if (voModel.isJsonWriter()) options.add(JSON_WRITER);
+            if (Objects.nonNull(voModel.getFetchGraph())) options.add(ENTITY_GRAPH);
+            if (voModel.isProjection()) options.add(PROJECTION);
+            if (voModel.isMetrics()) options.add(METRICS);
+            if (voModel.isMappingContext()) options.add(MAPPING_CONTEXT);
+            if (voModel.isFieldMask()) options.add(FIELD_MASK);
+            if (voModel.isDelta()) options.add(DELTA);
+            if (voModel.isBinaryCodec()) options.add(BINARY_CODEC);
+            builder.append("vo\t").append(voModel.getVoClass()).append('\t').append(voModel.getSceneName())
+                    .append('\t').append(String.join(",", options)).append('\n');
+            for (VoModel.FieldModel voField : voModel.getFields())
+                builder.append("field\t").append(voField.getName()).append('\t').append(voField.getTypeName())
+                        .append('\t').append(Objects.toString(voField.getUseVo(), "")).append('\n');
+            if (Objects.nonNull(voModel.getFetchGraph()))
+                appendGraph(builder, voModel.getFetchGraph(), "");
+        }
+        return builder.toString();
+    }
+
+    private static void appendGraph(StringBuilder builder, VoModel.GraphNode node, String path) {
+        node.getChildren().forEach((name, child) -> {
+            String childPath = path.isEmpty() ? name : path + "." + name;
+            if (child.getChildren().isEmpty()) builder.append("graph\t").append(childPath).append('\n');
+            else appendGraph(builder, child, childPath);
+        });
+    }
+
+    static List<Entry> read(Reader reader) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        Entry entry = null;
+        BufferedReader bufferedReader = new BufferedReader(reader);
+        for (String line = bufferedReader.readLine(); line != null; line = bufferedReader.readLine()) {
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] columns = line.split("\t", -1);
+            switch (columns[0]) {
+                case "vo":
+                    entry = new Entry();
+                    entry.setVoClassName(columns[1]);
+                    entry.setSceneName(columns[2]);
+                    for (String option : columns[3].split(","))
+                        entry.getOptions().add(option);
+                    entries.add(entry);
+                    break;
+                case "field":
+                    if (entry == null) break;
+                    Field field = new Field();
+                    field.setName(columns[1]);
+                    field.setTypeName(columns[2]);
+                    field.setUseVo(columns[3].isEmpty() ? null : columns[3]);
+                    entry.getFields().add(field);
+                    break;
+                case "graph":
+                    if (entry != null) entry.getGraph().add(columns[1]);
+                    break;
+                default: //忽略以后版本增加的行
+            }
+        }
+        return entries;
+    }
+
+    @Data
+    static class Entry {
+        private String voClassName;
+        private String sceneName;
+        private Set<String> options = new LinkedHashSet<>();
+        private List<Field> fields = new ArrayList<>();
+        private List<String> graph = new ArrayList<>();
+
+        public boolean hasOption(String option) {
+            return options.contains(option);
+        }
+    }
+
+    @Data
+    static class Field {
+        private String name;
+        private String typeName;
+        private String useVo;
+    }
+}
@@ -0,0 +1,203 @@
+package cn.dongjak.apt.vo;
+
+import com.squareup.javapoet.*;
+
+import javax.lang.model.element.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 生成{@value #CLASS_NAME}:按实体类和场景直接调用各个VO的{@code from}方法,
+ * 通用服务层不再需要通过反射查找VO类和映射方法
+ * <p>
+ * 实体类按其第一个有VO的父类确定,因此JPA代理等子类也能映射;场景名称为VO类名中{@code VOFor}之后的部分,
+ * 缺省场景为空字符串,ExtJS表格VO的场景为{@value #EXTJS_GRID_SCENE}
+ */
+class VoMappersBuilder {
+
+    static final String CLASS_NAME = "VoMappers";
+
+    static final String EXTJS_GRID_SCENE = "ExtjsGrid";
+
+    private VoMappersBuilder() {
+    }
+
+    /**
+     * VO在注册表中的场景名称,和VO类名的后缀一致
+     *
+     * @param voModel VO数据
+     * @return 场景名称
+     */
+    static String getScene(VoModel voModel) {
+        return voModel.isUsedExtjsGrid() ? EXTJS_GRID_SCENE : voModel.getSceneName();
+    }
+
+    static JavaFile build(String packageName, List<VoModel> voModels) {
+        Map<ClassName, List<VoModel>> voModelsByEntity = new LinkedHashMap<>();
+        for (VoModel voModel : voModels)
+            voModelsByEntity.computeIfAbsent(voModel.getDomainClass(), o -> new ArrayList<>()).add(voModel);
+        List<ClassName> entities = new ArrayList<>(voModelsByEntity.keySet());
+
+        TypeName classValue = ParameterizedTypeName.get(ClassName.get(ClassValue.class), ClassName.get(Integer.class));
+        TypeName wildcardClass = ParameterizedTypeName.get(ClassName.get(Class.class), WildcardTypeName.subtypeOf(Object.class));
+        CodeBlock.Builder indexBuilder = CodeBlock.builder()
+                .beginControlFlow("for ($T type = entityClass; type != null; type = type.getSuperclass())", wildcardClass)
+                .beginControlFlow("switch (type.getName())");
+        for (int i = 0; i < entities.size(); i++)
+            indexBuilder.addStatement("case $S: return $L", entities.get(i).reflectionName(), i);
+        indexBuilder.endControlFlow().endControlFlow().addStatement("return -1");
+        TypeSpec entityIndex = TypeSpec.anonymousClassBuilder("")
+                .superclass(classValue)
+                .addMethod(MethodSpec.methodBuilder("computeValue")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PROTECTED)
+                        .returns(Integer.class)
+                        .addParameter(wildcardClass, "entityClass")
+                        .addCode(indexBuilder.build())
+                        .build())
+                .build();
+
+        TypeSpec.Builder mappersBuilder = TypeSpec.classBuilder(CLASS_NAME)
+                .addJavadoc("按实体类和场景调用VO的映射方法,由dongjak-apt根据本模块中的$L个VO生成\n", voModels.size())
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addField(FieldSpec.builder(classValue, "ENTITY_INDEX", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .addJavadoc("实体类及其子类在下面的switch中的序号,没有VO的类为-1\n")
+                        .initializer("$L", entityIndex)
+                        .build())
+                .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build());
+
+        TypeName wildcardList = ParameterizedTypeName.get(ClassName.get(List.class), WildcardTypeName.subtypeOf(Object.class));
+        TypeName wildcardCollection = ParameterizedTypeName.get(ClassName.get(Collection.class), WildcardTypeName.subtypeOf(Object.class));
+
+        //每个实体类一个强类型的map,按场景直接调用VO的静态方法
+        voModelsByEntity.forEach((entity, entityVoModels) -> {
+            CodeBlock.Builder switchBuilder = CodeBlock.builder()
+                    .beginControlFlow("switch (scene)");
+            for (VoModel voModel : entityVoModels)
+                switchBuilder.addStatement("case $S: return $T.from(entity)", getScene(voModel), voModel.getVoClass());
+            switchBuilder.addStatement("default: throw unknownScene($T.class, scene)", entity)
+                    .endControlFlow();
+            mappersBuilder.addMethod(MethodSpec.methodBuilder("map")
+                    .addJavadoc("把{@link $T}映射为场景{@code scene}的VO\n", entity)
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                    .returns(Object.class)
+                    .addParameter(entity, "entity")
+                    .addParameter(String.class, "scene")
+                    .addStatement("if (entity == null) return null")
+                    .addCode(switchBuilder.build())
+                    .build());
+        });
+
+        CodeBlock.Builder mapBuilder = CodeBlock.builder()
+                .addStatement("if (entity == null) return null")
+                .beginControlFlow("switch (ENTITY_INDEX.get(entity.getClass()))");
+        for (int i = 0; i < entities.size(); i++)
+            mapBuilder.addStatement("case $L: return map(($T) entity, scene)", i, entities.get(i));
+        mapBuilder.addStatement("default: throw unknownEntity(entity.getClass())").endControlFlow();
+        mappersBuilder.addMethod(MethodSpec.methodBuilder("map")
+                .addJavadoc("把实体映射为场景{@code scene}的VO,实体类型在运行时确定\n")
+                .addJavadoc("\n@param entity 实体,为{@code null}时返回{@code null}")
+                .addJavadoc("\n@param scene  场景名称,缺省场景为空字符串")
+                .addJavadoc("\n@return VO\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(Object.class)
+                .addParameter(Object.class, "entity")
+                .addParameter(String.class, "scene")
+                .addCode(mapBuilder.build())
+                .build());
+
+        TypeVariableName v = TypeVariableName.get("V");
+        ParameterizedTypeName voClass = ParameterizedTypeName.get(ClassName.get(Class.class), v);
+        mappersBuilder.addMethod(MethodSpec.methodBuilder("map")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addTypeVariable(v)
+                .returns(v)
+                .addParameter(Object.class, "entity")
+                .addParameter(String.class, "scene")
+                .addParameter(voClass, "voClass")
+                .addStatement("return voClass.cast(map(entity, scene))")
+                .build());
+
+        //批量映射只按第一个元素确定一次实体类型,之后调用VO的fromList/fromCollection
+        mappersBuilder.addMethod(buildBatchMethod("mapList", "fromList", wildcardList, List.class, voModelsByEntity));
+        mappersBuilder.addMethod(buildBatchMethod("mapCollection", "fromCollection", wildcardCollection, Collection.class, voModelsByEntity));
+        mappersBuilder.addMethod(buildTypedBatchMethod("mapList", wildcardList, List.class));
+        mappersBuilder.addMethod(buildTypedBatchMethod("mapCollection", wildcardCollection, Collection.class));
+
+        mappersBuilder.addMethod(MethodSpec.methodBuilder("unknownScene")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(IllegalArgumentException.class)
+                .addParameter(wildcardClass, "entityClass")
+                .addParameter(String.class, "scene")
+                .addStatement("return new $T($T.format($S, entityClass.getName(), scene))",
+                        IllegalArgumentException.class, String.class, "实体类%s没有场景为[%s]的VO")
+                .build());
+        mappersBuilder.addMethod(MethodSpec.methodBuilder("unknownEntity")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(IllegalArgumentException.class)
+                .addParameter(wildcardClass, "entityClass")
+                .addStatement("return new $T($S + entityClass.getName() + $S)",
+                        IllegalArgumentException.class, "没有为", "生成VO")
+                .build());
+
+        //引用了所有VO,以所有实体类作为源元素
+        voModels.stream().map(VoModel::getElement).distinct().forEach(mappersBuilder::addOriginatingElement);
+        return JavaFile.builder(packageName, mappersBuilder.build()).build();
+    }
+
+    private static MethodSpec buildTypedBatchMethod(String methodName, TypeName entitiesType, Class<?> rawType) {
+        TypeVariableName v = TypeVariableName.get("V");
+        TypeName resultType = ParameterizedTypeName.get(ClassName.get(rawType), v);
+        return MethodSpec.methodBuilder(methodName)
+                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class).addMember("value", "$S", "unchecked").build())
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addTypeVariable(v)
+                .returns(resultType)
+                .addParameter(entitiesType, "entities")
+                .addParameter(String.class, "scene")
+                .addParameter(ParameterizedTypeName.get(ClassName.get(Class.class), v), "voClass")
+                .addStatement("return ($T) $L(entities, scene)", resultType, methodName)
+                .build();
+    }
+
+    private static MethodSpec buildBatchMethod(String methodName, String voMethodName, TypeName entitiesType,
+                                               Class<?> rawType, Map<ClassName, List<VoModel>> voModelsByEntity) {
+        List<ClassName> entities = new ArrayList<>(voModelsByEntity.keySet());
+        CodeBlock.Builder codeBuilder = CodeBlock.builder()
+                .addStatement("if (entities == null) return null")
+                .addStatement("$T first = null", Object.class)
+                .beginControlFlow("for ($T entity : entities)", Object.class)
+                .beginControlFlow("if (entity != null)")
+                .addStatement("first = entity")
+                .addStatement("break")
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("if (first == null) return new $T<>(entities)", ArrayList.class)
+                .beginControlFlow("switch (ENTITY_INDEX.get(first.getClass()))");
+        for (int i = 0; i < entities.size(); i++) {
+            ClassName entity = entities.get(i);
+            TypeName typedEntities = ParameterizedTypeName.get(ClassName.get(rawType), entity);
+            codeBuilder.add("case $L:\n", i).indent().beginControlFlow("switch (scene)");
+            for (VoModel voModel : voModelsByEntity.get(entity))
+                codeBuilder.addStatement("case $S: return $T.$L(($T) entities)", getScene(voModel), voModel.getVoClass(), voMethodName, typedEntities);
+            codeBuilder.addStatement("default: throw unknownScene($T.class, scene)", entity)
+                    .endControlFlow().unindent();
+        }
+        codeBuilder.addStatement("default: throw unknownEntity(first.getClass())").endControlFlow();
+        return MethodSpec.methodBuilder(methodName)
+                .addJavadoc("批量映射实体,实体类型由第一个不为{@code null}的元素确定,所有元素必须属于同一个实体类(或其子类)\n")
+                .addJavadoc("\n@param entities 实体,为{@code null}时返回{@code null}")
+                .addJavadoc("\n@param scene    场景名称,缺省场景为空字符串")
+                .addJavadoc("\n@return VO\n")
+                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class).addMember("value", "$S", "unchecked").build())
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(entitiesType)
+                .addParameter(entitiesType, "entities")
+                .addParameter(String.class, "scene")
+                .addCode(codeBuilder.build())
+                .build();
+    }
+}
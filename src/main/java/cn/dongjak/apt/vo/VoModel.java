@@ -0,0 +1,248 @@
+package cn.dongjak.apt.vo;
+
+import cn.dongjak.annotations.vo.VO;
+import cn.dongjak.apt.utils.ElementUtils;
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.TypeName;
+import lombok.Builder;
+import lombok.Data;
+
+import javax.lang.model.element.Element;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 在处理器线程上从实体类元素中解析出的VO数据
+ * <p>
+ * 生成VO源码时只读取这里的数据,不再访问{@link Element}或类型,因此可以在多个线程上同时生成
+ */
+@Data
+@Builder
+class VoModel {
+
+    /**
+     * 实体类元素,只作为生成文件的源元素
+     */
+    private Element element;
+
+    private String packageName;
+
+    private String className;
+
+    private String sceneName;
+
+    private ClassName domainClass;
+
+    /**
+     * 由实体类上的{@code @DbComment}得到的{@code @ApiModel},没有时为{@code null}
+     */
+    private AnnotationSpec apiModel;
+
+    private VO.MappingMode mappingMode;
+
+    private VO.Layout layout;
+
+    /**
+     * 是否是用于ExtJS表格的VO,这类VO额外生成按列存放的{@code Batch}
+     */
+    private boolean usedExtjsGrid;
+
+    private int parallelThreshold;
+
+    /**
+     * 是否在映射方法中记录统计
+     */
+    private boolean metrics;
+
+    /**
+     * 是否生成JPQL投影查询
+     */
+    private boolean projection;
+
+    /**
+     * 实体类在JPQL中的名称
+     */
+    private String entityName;
+
+    /**
+     * VO读取的关联组成的实体图,没有打开时为{@code null}
+     */
+    private GraphNode fetchGraph;
+
+    /**
+     * 是否生成直接把实体类写为JSON的{@code writeJson}
+     */
+    private boolean jsonWriter;
+
+    /**
+     * 是否生成使用{@code MappingContext}的映射方法
+     */
+    private boolean mappingContext;
+
+    /**
+     * 是否生成字段掩码方法,打开{@code delta}时也生成,字段超过掩码位数时为{@code false}
+     */
+    private boolean fieldMask;
+
+    /**
+     * 是否生成{@code diff}和{@code writeDelta},字段超过掩码位数时为{@code false}
+     */
+    private boolean delta;
+
+    /**
+     * 是否生成二进制编解码方法
+     */
+    private boolean binaryCodec;
+
+    /**
+     * VO缓存的容量,为0时不缓存
+     */
+    private int cacheSize;
+
+    /**
+     * 实体类的{@code @Id}字段,作为缓存的键
+     */
+    private PathSegment cacheId;
+
+    /**
+     * 实体类的{@code @Version}字段,版本不同时缓存的VO失效
+     */
+    private PathSegment cacheVersion;
+
+    private List<FieldModel> fields;
+
+    public ClassName getVoClass() {
+        return ClassName.get(packageName, className);
+    }
+
+    @Data
+    @Builder
+    static class FieldModel {
+
+        /**
+         * VO上的字段声明,包含文档和复制过来的注解
+         */
+        private FieldSpec fieldSpec;
+
+        private String expression;
+
+        private boolean collection;
+
+        private String collectionType;
+
+        /**
+         * {@code @UseVo}指定的VO类名,没有时为{@code null}
+         */
+        private String useVo;
+
+        /**
+         * {@code @UseVo}字段映射的实体类全限定名,集合为元素类型,{@link java.util.Map}为值的类型
+         */
+        private String useVoEntity;
+
+        /**
+         * 字段是否是枚举类型
+         */
+        private boolean enumType;
+
+        /**
+         * 路径表达式上的每一段,最后一段即字段本身
+         */
+        private List<PathSegment> path;
+
+        /**
+         * 是否可以出现在JPQL投影查询中,{@code @UseVo}字段、集合字段和值为实体的字段不能直接查询
+         */
+        private boolean projectable;
+
+        /**
+         * JSON中的字段名称,即{@code @JSONField}的{@code name},没有指定时为字段名称
+         */
+        private String jsonName;
+
+        /**
+         * {@code @JSONField}的{@code ordinal},JSON字段按该值和名称排序
+         */
+        private int jsonOrdinal;
+
+        /**
+         * {@code @JSONField}的{@code format},没有指定时为{@code null}
+         */
+        private String jsonFormat;
+
+        /**
+         * {@code @JSONField}的{@code serialize}
+         */
+        private boolean jsonSerialize;
+
+        public String getName() {
+            return fieldSpec.name;
+        }
+
+        public boolean isArray() {
+            return ElementUtils.ARRAY_COLLECTION_TYPE.equals(collectionType);
+        }
+
+        /**
+         * 读取到的值赋给VO字段时使用的表达式,没有使用{@code @UseVo}的数组会被复制,VO不和实体共用同一个数组
+         *
+         * @param variable 保存值的变量
+         * @return 表达式
+         */
+        public String copyExpression(String variable) {
+            return Objects.isNull(useVo) && isArray() ? variable + " == null ? null : " + variable + ".clone()" : variable;
+        }
+
+        public TypeName getTypeName() {
+            return fieldSpec.type;
+        }
+    }
+
+    @Data
+    @Builder
+    static class PathSegment {
+
+        /**
+         * 从实体类到这一段为止的路径表达式
+         */
+        private String expression;
+
+        private String readMethodName;
+
+        /**
+         * 这一段的值的类型,类型变量被替换为实体类
+         */
+        private TypeName typeName;
+
+        /**
+         * 这一段的值为空时使用的缺省值字面量
+         */
+        private String defaultValue;
+
+        /**
+         * 这一段是否是嵌入对象,JPQL中不能join嵌入对象,只能继续使用路径
+         */
+        private boolean embedded;
+    }
+
+    /**
+     * 实体图上的一个关联,子节点为从该关联继续加载的关联
+     */
+    @Data
+    static class GraphNode {
+
+        private final Map<String, GraphNode> children = new LinkedHashMap<>();
+
+        public GraphNode child(String name) {
+            return children.computeIfAbsent(name, o -> new GraphNode());
+        }
+
+        public void merge(GraphNode other) {
+            other.getChildren().forEach((name, child) -> child(name).merge(child));
+        }
+    }
+}
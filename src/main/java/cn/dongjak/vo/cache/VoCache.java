@@ -0,0 +1,153 @@
+package cn.dongjak.vo.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 打开了{@code cacheSize}的VO使用的缓存,以实体的{@code @Id}为键,实体的{@code @Version}与缓存时不同则视为未命中
+ * <p>
+ * 容量有上限,按最近最少使用淘汰。为减少锁竞争,缓存按键的哈希分为多段,每段单独加锁、单独淘汰,
+ * 因此淘汰顺序只在段内是严格的LRU。缓存的VO被所有调用方共用,不能修改
+ *
+ * @param <V> VO类型
+ */
+public class VoCache<V> {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    /**
+     * 每段至少容纳的条目数,容量较小时段数相应减少
+     */
+    private static final int MIN_SEGMENT_SIZE = 16;
+
+    private final Segment<V>[] segments;
+
+    private final int segmentMask;
+
+    private final int maxSize;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public VoCache(int maxSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize必须大于0");
+        int segmentCount = Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, maxSize / MIN_SEGMENT_SIZE)));
+        this.maxSize = maxSize;
+        this.segmentMask = segmentCount - 1;
+        this.segments = (Segment<V>[]) new Segment<?>[segmentCount];
+        for (int i = 0; i < segmentCount; i++)
+            segments[i] = new Segment<>((maxSize + segmentCount - 1) / segmentCount);
+    }
+
+    /**
+     * 查找实体对应的VO
+     *
+     * @param id      实体的标识
+     * @param version 实体当前的版本
+     * @return 版本一致时返回缓存的VO, 否则返回{@code null}
+     */
+    public V get(Object id, Object version) {
+        Entry<V> entry = segmentFor(id).get(id);
+        if (entry != null && Objects.equals(entry.version, version)) {
+            hits.increment();
+            return entry.vo;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 缓存实体映射成的VO,替换同一个标识下旧版本的VO
+     */
+    public void put(Object id, Object version, V vo) {
+        segmentFor(id).put(id, new Entry<>(version, vo));
+    }
+
+    /**
+     * 移除实体对应的VO,例如实体被删除时
+     */
+    public void remove(Object id) {
+        segmentFor(id).remove(id);
+    }
+
+    public void clear() {
+        for (Segment<V> segment : segments)
+            segment.clear();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments)
+            size += segment.size();
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private Segment<V> segmentFor(Object id) {
+        int hash = id.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & segmentMask];
+    }
+
+    private static final class Entry<V> {
+        private final Object version;
+        private final V vo;
+
+        private Entry(Object version, V vo) {
+            this.version = version;
+            this.vo = vo;
+        }
+    }
+
+    /**
+     * 按访问顺序排列的{@link LinkedHashMap},超过容量时移除最久没有访问的条目
+     */
+    private static final class Segment<V> {
+        private final Map<Object, Entry<V>> entries;
+
+        private Segment(int capacity) {
+            this.entries = new LinkedHashMap<Object, Entry<V>>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, Entry<V>> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        private synchronized Entry<V> get(Object id) {
+            return entries.get(id);
+        }
+
+        private synchronized void put(Object id, Entry<V> entry) {
+            entries.put(id, entry);
+        }
+
+        private synchronized void remove(Object id) {
+            entries.remove(id);
+        }
+
+        private synchronized void clear() {
+            entries.clear();
+        }
+
+        private synchronized int size() {
+            return entries.size();
+        }
+    }
+}
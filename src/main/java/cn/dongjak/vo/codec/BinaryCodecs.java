@@ -0,0 +1,372 @@
+package cn.dongjak.vo.codec;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 生成的{@code writeTo}和{@code readFrom}方法使用的二进制编码工具
+ * <p>
+ * 整数使用zigzag变长编码,字符串为变长编码的UTF-8字节数加字节;
+ * 类型在编译时不能确定的值(例如{@code Map<String, Integer>})通过{@link #writeObject}写入一个类型标记再写入值
+ */
+public class BinaryCodecs {
+
+    private static final int NULL = 0;
+    private static final int BOOLEAN = 1;
+    private static final int BYTE = 2;
+    private static final int SHORT = 3;
+    private static final int INT = 4;
+    private static final int LONG = 5;
+    private static final int FLOAT = 6;
+    private static final int DOUBLE = 7;
+    private static final int CHAR = 8;
+    private static final int STRING = 9;
+    private static final int DATE = 10;
+    private static final int BIG_DECIMAL = 11;
+    private static final int BIG_INTEGER = 12;
+    private static final int LOCAL_DATE = 13;
+    private static final int LOCAL_DATE_TIME = 14;
+    private static final int INSTANT = 15;
+    private static final int LIST = 16;
+    private static final int SET = 17;
+    private static final int MAP = 18;
+    private static final int BYTE_ARRAY = 19;
+    private static final int INT_ARRAY = 20;
+    private static final int LONG_ARRAY = 21;
+    private static final int DOUBLE_ARRAY = 22;
+    private static final int STRING_ARRAY = 23;
+    private static final int TIMESTAMP = 24;
+    private static final int SQL_DATE = 25;
+    private static final int SQL_TIME = 26;
+
+    private BinaryCodecs() {
+    }
+
+    /**
+     * 读取数据开头的结构哈希并与VO当前的结构哈希比较
+     *
+     * @param voClass      VO类型
+     * @param expectedHash VO当前的结构哈希
+     * @param actualHash   数据中的结构哈希
+     * @throws SchemaMismatchException 两者不一致
+     */
+    public static void checkSchema(Class<?> voClass, int expectedHash, int actualHash) throws SchemaMismatchException {
+        if (expectedHash != actualHash)
+            throw new SchemaMismatchException(voClass, expectedHash, actualHash);
+    }
+
+    /**
+     * 写入到{@link ByteBuffer}的当前位置,空间不足时抛出{@link java.nio.BufferOverflowException}
+     */
+    public static DataOutput output(ByteBuffer buffer) {
+        return new DataOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                buffer.put((byte) b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                buffer.put(b, off, len);
+            }
+        });
+    }
+
+    /**
+     * 从{@link ByteBuffer}的当前位置读取,读取的字节数和写入时相同
+     */
+    public static DataInput input(ByteBuffer buffer) {
+        return new DataInputStream(new InputStream() {
+            @Override
+            public int read() {
+                return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) return 0;
+                if (!buffer.hasRemaining()) return -1;
+                len = Math.min(len, buffer.remaining());
+                buffer.get(b, off, len);
+                return len;
+            }
+        });
+    }
+
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) (zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    public static long readVarLong(DataInput in) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+        throw new IOException("变长整数超过10个字节");
+    }
+
+    /**
+     * 写入集合大小、数组长度等非负整数
+     */
+    public static void writeSize(DataOutput out, int size) throws IOException {
+        writeVarLong(out, size);
+    }
+
+    public static int readSize(DataInput in) throws IOException {
+        long size = readVarLong(in);
+        if (size < 0 || size > Integer.MAX_VALUE)
+            throw new IOException("长度无效: " + size);
+        return (int) size;
+    }
+
+    /**
+     * 写入不为{@code null}的字符串
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeSize(out, bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[readSize(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 写入不为{@code null}的{@link Timestamp},包括毫秒以下的纳秒
+     */
+    public static void writeTimestamp(DataOutput out, Timestamp value) throws IOException {
+        writeVarLong(out, value.getTime());
+        writeVarLong(out, value.getNanos());
+    }
+
+    public static Timestamp readTimestamp(DataInput in) throws IOException {
+        Timestamp timestamp = new Timestamp(readVarLong(in));
+        timestamp.setNanos((int) readVarLong(in));
+        return timestamp;
+    }
+
+    /**
+     * 写入类型标记和值,值可以为{@code null}
+     *
+     * @param out   输出
+     * @param value 值,只能是基本类型的包装类型、字符串、常用日期和数字类型,或者由它们组成的{@link List}、{@link Set}、{@link Map}和数组;
+     *              {@link Timestamp}、{@link java.sql.Date}和{@link Time}读取后类型不变,{@link Date}的其它子类读取为{@link Date}
+     * @throws IOException              写入失败
+     * @throws IllegalArgumentException 值的类型不能编码
+     */
+    public static void writeObject(DataOutput out, Object value) throws IOException {
+        if (value == null) out.writeByte(NULL);
+        else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            writeVarLong(out, (Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            writeVarLong(out, (Long) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            writeVarLong(out, (Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Character) {
+            out.writeByte(CHAR);
+            writeVarLong(out, (Character) value);
+        } else if (value instanceof Timestamp) {
+            out.writeByte(TIMESTAMP);
+            writeTimestamp(out, (Timestamp) value);
+        } else if (value instanceof java.sql.Date) {
+            out.writeByte(SQL_DATE);
+            writeVarLong(out, ((Date) value).getTime());
+        } else if (value instanceof Time) {
+            out.writeByte(SQL_TIME);
+            writeVarLong(out, ((Date) value).getTime());
+        } else if (value instanceof Date) {
+            out.writeByte(DATE);
+            writeVarLong(out, ((Date) value).getTime());
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(BIG_DECIMAL);
+            writeString(out, value.toString());
+        } else if (value instanceof BigInteger) {
+            out.writeByte(BIG_INTEGER);
+            writeString(out, value.toString());
+        } else if (value instanceof LocalDate) {
+            out.writeByte(LOCAL_DATE);
+            writeVarLong(out, ((LocalDate) value).toEpochDay());
+        } else if (value instanceof LocalDateTime) {
+            out.writeByte(LOCAL_DATE_TIME);
+            writeString(out, value.toString());
+        } else if (value instanceof Instant) {
+            out.writeByte(INSTANT);
+            writeVarLong(out, ((Instant) value).getEpochSecond());
+            writeVarLong(out, ((Instant) value).getNano());
+        } else if (value instanceof Collection) {
+            out.writeByte(value instanceof Set ? SET : LIST);
+            writeSize(out, ((Collection<?>) value).size());
+            for (Object element : (Collection<?>) value)
+                writeObject(out, element);
+        } else if (value instanceof Map) {
+            out.writeByte(MAP);
+            writeSize(out, ((Map<?, ?>) value).size());
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                writeObject(out, entry.getKey());
+                writeObject(out, entry.getValue());
+            }
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTE_ARRAY);
+            writeSize(out, ((byte[]) value).length);
+            out.write((byte[]) value);
+        } else if (value instanceof int[]) {
+            out.writeByte(INT_ARRAY);
+            writeSize(out, ((int[]) value).length);
+            for (int element : (int[]) value)
+                writeVarLong(out, element);
+        } else if (value instanceof long[]) {
+            out.writeByte(LONG_ARRAY);
+            writeSize(out, ((long[]) value).length);
+            for (long element : (long[]) value)
+                writeVarLong(out, element);
+        } else if (value instanceof double[]) {
+            out.writeByte(DOUBLE_ARRAY);
+            writeSize(out, ((double[]) value).length);
+            for (double element : (double[]) value)
+                out.writeDouble(element);
+        } else if (value instanceof String[]) {
+            out.writeByte(STRING_ARRAY);
+            writeSize(out, ((String[]) value).length);
+            for (String element : (String[]) value)
+                writeObject(out, element);
+        } else
+            throw new IllegalArgumentException("不能编码类型为" + value.getClass().getName() + "的值");
+    }
+
+    /**
+     * 读取{@link #writeObject}写入的值,{@link List}读取为{@link ArrayList},{@link Set}和{@link Map}读取为保持顺序的实现
+     */
+    public static Object readObject(DataInput in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case BOOLEAN:
+                return in.readBoolean();
+            case BYTE:
+                return in.readByte();
+            case SHORT:
+                return (short) readVarLong(in);
+            case INT:
+                return (int) readVarLong(in);
+            case LONG:
+                return readVarLong(in);
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case CHAR:
+                return (char) readVarLong(in);
+            case STRING:
+                return readString(in);
+            case DATE:
+                return new Date(readVarLong(in));
+            case TIMESTAMP:
+                return readTimestamp(in);
+            case SQL_DATE:
+                return new java.sql.Date(readVarLong(in));
+            case SQL_TIME:
+                return new Time(readVarLong(in));
+            case BIG_DECIMAL:
+                return new BigDecimal(readString(in));
+            case BIG_INTEGER:
+                return new BigInteger(readString(in));
+            case LOCAL_DATE:
+                return LocalDate.ofEpochDay(readVarLong(in));
+            case LOCAL_DATE_TIME:
+                return LocalDateTime.parse(readString(in));
+            case INSTANT:
+                return Instant.ofEpochSecond(readVarLong(in), readVarLong(in));
+            case LIST:
+            case SET: {
+                int size = readSize(in);
+                Collection<Object> collection = tag == SET ? new LinkedHashSet<>((int) (size / 0.75f) + 1) : new ArrayList<>(size);
+                for (int i = 0; i < size; i++)
+                    collection.add(readObject(in));
+                return collection;
+            }
+            case MAP: {
+                int size = readSize(in);
+                Map<Object, Object> map = new LinkedHashMap<>((int) (size / 0.75f) + 1);
+                for (int i = 0; i < size; i++)
+                    map.put(readObject(in), readObject(in));
+                return map;
+            }
+            case BYTE_ARRAY: {
+                byte[] array = new byte[readSize(in)];
+                in.readFully(array);
+                return array;
+            }
+            case INT_ARRAY: {
+                int[] array = new int[readSize(in)];
+                for (int i = 0; i < array.length; i++)
+                    array[i] = (int) readVarLong(in);
+                return array;
+            }
+            case LONG_ARRAY: {
+                long[] array = new long[readSize(in)];
+                for (int i = 0; i < array.length; i++)
+                    array[i] = readVarLong(in);
+                return array;
+            }
+            case DOUBLE_ARRAY: {
+                double[] array = new double[readSize(in)];
+                for (int i = 0; i < array.length; i++)
+                    array[i] = in.readDouble();
+                return array;
+            }
+            case STRING_ARRAY: {
+                String[] array = new String[readSize(in)];
+                for (int i = 0; i < array.length; i++)
+                    array[i] = (String) readObject(in);
+                return array;
+            }
+            default:
+                throw new IOException("未知的类型标记: " + tag);
+        }
+    }
+}
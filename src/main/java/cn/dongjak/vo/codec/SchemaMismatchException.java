@@ -0,0 +1,36 @@
+package cn.dongjak.vo.codec;
+
+import java.io.IOException;
+
+/**
+ * 读取的数据是由字段不同的VO写入的,通常说明缓存中的数据已经过期,应当丢弃
+ */
+public class SchemaMismatchException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Class<?> voClass;
+
+    private final int expectedHash;
+
+    private final int actualHash;
+
+    public SchemaMismatchException(Class<?> voClass, int expectedHash, int actualHash) {
+        super(String.format("%s的结构已经变化,当前结构为%08x,数据的结构为%08x", voClass.getName(), expectedHash, actualHash));
+        this.voClass = voClass;
+        this.expectedHash = expectedHash;
+        this.actualHash = actualHash;
+    }
+
+    public Class<?> getVoClass() {
+        return voClass;
+    }
+
+    public int getExpectedHash() {
+        return expectedHash;
+    }
+
+    public int getActualHash() {
+        return actualHash;
+    }
+}
@@ -0,0 +1,197 @@
+package cn.dongjak.vo.json;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.text.SimpleDateFormat;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 生成的{@code writeJson}方法使用的JSON写入工具,不使用反射,输出和fastjson的默认设置一致:
+ * 日期输出为毫秒数,指定了{@code format}时输出为格式化后的字符串,{@code NaN}和无穷大输出为{@code null},
+ * 字符串中的U+2028和U+2029也会转义,输出可以直接嵌入到脚本中
+ */
+public class JsonWriters {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * 写入一个元素,{@code writeJson}方法可以直接作为该接口的实现
+     *
+     * @param <T> 元素类型
+     */
+    @FunctionalInterface
+    public interface ElementWriter<T> {
+        void write(T element, Appendable out) throws IOException;
+    }
+
+    private JsonWriters() {
+    }
+
+    public static void writeValue(Appendable out, boolean value) throws IOException {
+        out.append(value ? "true" : "false");
+    }
+
+    public static void writeValue(Appendable out, int value) throws IOException {
+        out.append(Integer.toString(value));
+    }
+
+    public static void writeValue(Appendable out, long value) throws IOException {
+        out.append(Long.toString(value));
+    }
+
+    public static void writeValue(Appendable out, float value) throws IOException {
+        if (Float.isNaN(value) || Float.isInfinite(value)) out.append("null");
+        else out.append(Float.toString(value));
+    }
+
+    public static void writeValue(Appendable out, double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) out.append("null");
+        else out.append(Double.toString(value));
+    }
+
+    public static void writeValue(Appendable out, char value) throws IOException {
+        out.append('"');
+        writeEscaped(out, value);
+        out.append('"');
+    }
+
+    /**
+     * 写入任意值,集合、数组和{@link Map}逐个写入其中的元素,不能识别的类型写入{@link String#valueOf(Object)}的结果
+     *
+     * @param out   输出
+     * @param value 值
+     * @throws IOException 写入失败
+     */
+    public static void writeValue(Appendable out, Object value) throws IOException {
+        writeValue(out, value, null);
+    }
+
+    /**
+     * 写入任意值,日期类型按{@code format}格式化
+     *
+     * @param out    输出
+     * @param value  值
+     * @param format {@code JSONField}上的日期格式,没有时为{@code null}
+     * @throws IOException 写入失败
+     */
+    public static void writeValue(Appendable out, Object value, String format) throws IOException {
+        if (value == null) out.append("null");
+        else if (value instanceof CharSequence) writeString(out, (CharSequence) value);
+        else if (value instanceof Boolean) writeValue(out, ((Boolean) value).booleanValue());
+        else if (value instanceof Float) writeValue(out, ((Float) value).floatValue());
+        else if (value instanceof Double) writeValue(out, ((Double) value).doubleValue());
+        else if (value instanceof Number) out.append(value.toString());
+        else if (value instanceof Character) writeValue(out, ((Character) value).charValue());
+        else if (value instanceof Enum) writeString(out, ((Enum<?>) value).name());
+        else if (value instanceof Date) {
+            if (format == null) writeValue(out, ((Date) value).getTime());
+            else writeString(out, new SimpleDateFormat(format).format((Date) value));
+        } else if (value instanceof TemporalAccessor && format != null)
+            writeString(out, DateTimeFormatter.ofPattern(format).format((TemporalAccessor) value));
+        else if (value instanceof Iterable) writeArray(out, ((Iterable<?>) value).iterator(), (element, o) -> writeValue(o, element, format));
+        else if (value instanceof Map) writeMap(out, (Map<?, ?>) value, (element, o) -> writeValue(o, element, format));
+        else if (value.getClass().isArray()) {
+            out.append('[');
+            for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                if (i > 0) out.append(',');
+                writeValue(out, Array.get(value, i), format);
+            }
+            out.append(']');
+        } else writeString(out, String.valueOf(value));
+    }
+
+    /**
+     * 写入数组,元素由{@code writer}写入
+     *
+     * @param out      输出
+     * @param iterator 元素,为{@code null}时写入{@code null}
+     * @param writer   元素的写入方法
+     * @param <T>      元素类型
+     * @throws IOException 写入失败
+     */
+    public static <T> void writeArray(Appendable out, Iterator<T> iterator, ElementWriter<? super T> writer) throws IOException {
+        if (iterator == null) {
+            out.append("null");
+            return;
+        }
+        out.append('[');
+        for (boolean first = true; iterator.hasNext(); first = false) {
+            if (!first) out.append(',');
+            writer.write(iterator.next(), out);
+        }
+        out.append(']');
+    }
+
+    /**
+     * 写入对象,键为{@link String#valueOf(Object)}的结果,值由{@code writer}写入
+     *
+     * @param out    输出
+     * @param map    键值对,为{@code null}时写入{@code null}
+     * @param writer 值的写入方法
+     * @param <T>    值类型
+     * @throws IOException 写入失败
+     */
+    public static <T> void writeMap(Appendable out, Map<?, T> map, ElementWriter<? super T> writer) throws IOException {
+        if (map == null) {
+            out.append("null");
+            return;
+        }
+        char separator = '{';
+        for (Map.Entry<?, T> entry : map.entrySet()) {
+            out.append(separator);
+            separator = ',';
+            writeString(out, String.valueOf(entry.getKey()));
+            out.append(':');
+            writer.write(entry.getValue(), out);
+        }
+        if (separator == '{') out.append('{');
+        out.append('}');
+    }
+
+    public static void writeString(Appendable out, CharSequence value) throws IOException {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        int start = 0;
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c == '"' || c == '\\' || c == '\u2028' || c == '\u2029') {
+                out.append(value, start, i);
+                writeEscaped(out, c);
+                start = i + 1;
+            }
+        }
+        out.append(value, start, value.length());
+        out.append('"');
+    }
+
+    private static void writeEscaped(Appendable out, char c) throws IOException {
+        switch (c) {
+            case '"':
+                out.append("\\\"");
+                break;
+            case '\\':
+                out.append("\\\\");
+                break;
+            case '\n':
+                out.append("\\n");
+                break;
+            case '\r':
+                out.append("\\r");
+                break;
+            case '\t':
+                out.append("\\t");
+                break;
+            default:
+                if (c < 0x20 || c == '\u2028' || c == '\u2029')
+                    out.append("\\u").append(HEX[c >> 12 & 0xf]).append(HEX[c >> 8 & 0xf]).append(HEX[c >> 4 & 0xf]).append(HEX[c & 0xf]);
+                else out.append(c);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package cn.dongjak.vo.json;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 把字符按UTF-8直接编码写入输出流的{@link Appendable},只使用一个很小的字节缓冲区,
+ * 生成的{@code writeJson(domain, OutputStream)}不再为每次调用创建{@code OutputStreamWriter}和{@code BufferedWriter}
+ * <p>
+ * 代理对可以分两次写入,不成对的代理字符写为{@code ?},与{@code OutputStreamWriter}一致。不是线程安全的
+ */
+public class Utf8Output implements Appendable, Flushable {
+
+    private static final int BUFFER_SIZE = 256;
+
+    private final OutputStream out;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private int position;
+
+    /**
+     * 等待低位代理的高位代理,没有时为0
+     */
+    private char highSurrogate;
+
+    public Utf8Output(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public Utf8Output append(CharSequence csq) throws IOException {
+        return csq == null ? append("null", 0, 4) : append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Utf8Output append(CharSequence csq, int start, int end) throws IOException {
+        if (csq == null) return append("null", start, end);
+        for (int i = start; i < end; i++)
+            write(csq.charAt(i));
+        return this;
+    }
+
+    @Override
+    public Utf8Output append(char c) throws IOException {
+        write(c);
+        return this;
+    }
+
+    /**
+     * 把缓冲的字节写入输出流并刷新输出流,不关闭输出流
+     */
+    @Override
+    public void flush() throws IOException {
+        if (highSurrogate != 0) {
+            highSurrogate = 0;
+            put('?');
+        }
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+        out.flush();
+    }
+
+    private void write(char c) throws IOException {
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(high, c);
+                reserve(4);
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                return;
+            }
+            put('?');
+        }
+        if (c < 0x80)
+            put(c);
+        else if (c < 0x800) {
+            reserve(2);
+            buffer[position++] = (byte) (0xC0 | (c >> 6));
+            buffer[position++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c))
+            highSurrogate = c;
+        else if (Character.isLowSurrogate(c))
+            put('?');
+        else {
+            reserve(3);
+            buffer[position++] = (byte) (0xE0 | (c >> 12));
+            buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[position++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    private void put(char c) throws IOException {
+        reserve(1);
+        buffer[position++] = (byte) c;
+    }
+
+    private void reserve(int length) throws IOException {
+        if (position + length > buffer.length) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
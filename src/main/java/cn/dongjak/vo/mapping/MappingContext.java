@@ -0,0 +1,86 @@
+package cn.dongjak.vo.mapping;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * 一次批量映射中已经创建的VO,传给生成的{@code from(domain, context)}等方法后,
+ * 同一个实体(按引用比较)映射为同一种VO时只创建一次,之后直接返回已经创建的VO
+ * <p>
+ * VO在映射其嵌套字段之前就放入上下文,因此实体之间互相引用时映射会在回到已经映射的实体处停止,
+ * 得到的VO之间同样互相引用。该类不是线程安全的,每次批量映射使用一个新的上下文
+ */
+public class MappingContext {
+
+    /**
+     * 不可变VO在映射嵌套字段期间放在上下文中的占位对象
+     */
+    private static final Object IN_PROGRESS = new Object();
+
+    private final Map<Class<?>, Map<Object, Object>> mapped = new HashMap<>();
+
+    private Class<?> lastVoClass;
+
+    private Map<Object, Object> lastMapped;
+
+    /**
+     * 获取实体已经映射成的VO
+     *
+     * @param voClass VO类型
+     * @param domain  实体
+     * @param <V>     VO类型
+     * @return 已经映射的VO, 没有时返回{@code null}
+     */
+    public <V> V get(Class<V> voClass, Object domain) {
+        Map<Object, Object> vos = getMapped(voClass, false);
+        Object vo = vos == null ? null : vos.get(domain);
+        return vo == IN_PROGRESS ? null : voClass.cast(vo);
+    }
+
+    /**
+     * 开始映射一个不可变VO,不可变VO只能在嵌套字段映射完成后创建,映射期间用占位对象代替
+     *
+     * @param voClass VO类型
+     * @param domain  实体
+     * @return 如果该实体正在映射为该VO(即发生了循环引用)返回{@code false}
+     */
+    public boolean enter(Class<?> voClass, Object domain) {
+        return getMapped(voClass, true).putIfAbsent(domain, IN_PROGRESS) == null;
+    }
+
+    /**
+     * 记录实体映射成的VO
+     *
+     * @param voClass VO类型
+     * @param domain  实体
+     * @param vo      VO
+     * @param <V>     VO类型
+     */
+    public <V> void put(Class<V> voClass, Object domain, V vo) {
+        getMapped(voClass, true).put(domain, vo);
+    }
+
+    /**
+     * @return 上下文中VO的数量
+     */
+    public int size() {
+        return (int) mapped.values().stream().flatMap(o -> o.values().stream()).filter(o -> o != IN_PROGRESS).count();
+    }
+
+    /**
+     * 同一种VO通常会连续查找,缓存最后一次使用的映射表以减少一次哈希查找
+     */
+    private Map<Object, Object> getMapped(Class<?> voClass, boolean create) {
+        if (voClass == lastVoClass) return lastMapped;
+        Map<Object, Object> vos = mapped.get(voClass);
+        if (vos == null) {
+            if (!create) return null;
+            vos = new IdentityHashMap<>();
+            mapped.put(voClass, vos);
+        }
+        lastVoClass = voClass;
+        lastMapped = vos;
+        return vos;
+    }
+}
@@ -0,0 +1,109 @@
+package cn.dongjak.vo.metrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个VO的映射统计,由打开了{@code metrics}的VO在类初始化时通过{@link VoMetricsRegistry#register(Class)}创建
+ * <p>
+ * 计数使用{@link LongAdder},耗时只对部分调用随机采样,采样间隔由系统属性{@value #SAMPLE_INTERVAL_PROPERTY}设置,
+ * 取不大于该值的2的幂,默认每64次调用采样一次
+ */
+public class VoMetrics implements VoMetricsMXBean {
+
+    public static final String SAMPLE_INTERVAL_PROPERTY = "dongjak.vo.metrics.sampleInterval";
+
+    private static final int SAMPLE_MASK = Integer.highestOneBit(Math.max(1, Integer.getInteger(SAMPLE_INTERVAL_PROPERTY, 64))) - 1;
+
+    private final String voClassName;
+
+    private final LongAdder calls = new LongAdder();
+
+    private final LongAdder batchCalls = new LongAdder();
+
+    private final LongAdder batchElements = new LongAdder();
+
+    private final LongAdder sampledCalls = new LongAdder();
+
+    private final LongAdder sampledNanos = new LongAdder();
+
+    VoMetrics(String voClassName) {
+        this.voClassName = voClassName;
+    }
+
+    /**
+     * @return 本次调用是否需要计时
+     */
+    public boolean sample() {
+        return (ThreadLocalRandom.current().nextInt() & SAMPLE_MASK) == 0;
+    }
+
+    /**
+     * 记录一次{@code from}调用
+     *
+     * @param sampled 本次调用是否被采样
+     * @param start   被采样时调用开始的{@link System#nanoTime()}
+     */
+    public void recordCall(boolean sampled, long start) {
+        calls.increment();
+        if (sampled) {
+            sampledCalls.increment();
+            sampledNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 记录一次批量映射
+     *
+     * @param elements 元素数量
+     */
+    public void recordBatch(int elements) {
+        batchCalls.increment();
+        batchElements.add(elements);
+    }
+
+    @Override
+    public String getVoClassName() {
+        return voClassName;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getBatchCalls() {
+        return batchCalls.sum();
+    }
+
+    @Override
+    public long getBatchElements() {
+        return batchElements.sum();
+    }
+
+    @Override
+    public long getSampledCalls() {
+        return sampledCalls.sum();
+    }
+
+    @Override
+    public long getSampledNanos() {
+        return sampledNanos.sum();
+    }
+
+    @Override
+    public double getAverageSampledNanos() {
+        long count = sampledCalls.sum();
+        return count == 0 ? 0 : (double) sampledNanos.sum() / count;
+    }
+
+    @Override
+    public void reset() {
+        calls.reset();
+        batchCalls.reset();
+        batchElements.reset();
+        sampledCalls.reset();
+        sampledNanos.reset();
+    }
+}
@@ -0,0 +1,41 @@
+package cn.dongjak.vo.metrics;
+
+/**
+ * 通过JMX查看单个VO的映射统计
+ */
+public interface VoMetricsMXBean {
+
+    String getVoClassName();
+
+    /**
+     * @return {@code from}被调用的次数,包括批量映射中的每个元素
+     */
+    long getCalls();
+
+    /**
+     * @return {@code fromList}、{@code fromCollection}、{@code fromListParallel}被调用的次数
+     */
+    long getBatchCalls();
+
+    /**
+     * @return 批量映射的元素总数
+     */
+    long getBatchElements();
+
+    /**
+     * @return 被采样计时的{@code from}调用次数
+     */
+    long getSampledCalls();
+
+    /**
+     * @return 被采样的{@code from}调用的总耗时
+     */
+    long getSampledNanos();
+
+    /**
+     * @return 被采样的{@code from}调用的平均耗时
+     */
+    double getAverageSampledNanos();
+
+    void reset();
+}
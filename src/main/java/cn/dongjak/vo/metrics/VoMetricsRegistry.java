@@ -0,0 +1,61 @@
+package cn.dongjak.vo.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 所有打开了{@code metrics}的VO的映射统计
+ * <p>
+ * 调用{@link #registerMBeans()}后,已经加载和之后加载的VO都会以
+ * {@code cn.dongjak.vo:type=VoMetrics,name=<VO类名>}注册到平台MBeanServer
+ */
+public class VoMetricsRegistry {
+
+    private static final ConcurrentMap<String, VoMetrics> METRICS = new ConcurrentHashMap<>();
+
+    private static volatile MBeanServer mBeanServer;
+
+    public static VoMetrics register(Class<?> voClass) {
+        VoMetrics metrics = new VoMetrics(voClass.getName());
+        VoMetrics previous = METRICS.putIfAbsent(voClass.getName(), metrics);
+        if (previous != null) return previous;
+        MBeanServer server = mBeanServer;
+        if (server != null) registerMBean(server, metrics);
+        return metrics;
+    }
+
+    public static VoMetrics get(Class<?> voClass) {
+        return METRICS.get(voClass.getName());
+    }
+
+    public static Collection<VoMetrics> getAll() {
+        return Collections.unmodifiableCollection(METRICS.values());
+    }
+
+    public static void resetAll() {
+        METRICS.values().forEach(VoMetrics::reset);
+    }
+
+    public static synchronized void registerMBeans() {
+        if (mBeanServer != null) return;
+        mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        METRICS.values().forEach(metrics -> registerMBean(mBeanServer, metrics));
+    }
+
+    private static void registerMBean(MBeanServer server, VoMetrics metrics) {
+        try {
+            server.registerMBean(metrics, new ObjectName("cn.dongjak.vo:type=VoMetrics,name=" + ObjectName.quote(metrics.getVoClassName())));
+        } catch (InstanceAlreadyExistsException ignored) {
+            //同时调用register和registerMBeans时可能注册两次
+        } catch (JMException e) {
+            throw new IllegalStateException("注册VO映射统计失败: " + metrics.getVoClassName(), e);
+        }
+    }
+}
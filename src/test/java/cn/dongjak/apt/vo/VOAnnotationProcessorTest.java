@@ -0,0 +1,375 @@
+package cn.dongjak.apt.vo;
+
+import cn.dongjak.vo.mapping.MappingContext;
+import org.junit.Test;
+
+import javax.persistence.Tuple;
+import javax.tools.Diagnostic;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class VOAnnotationProcessorTest {
+
+    @Test
+    public void fieldNamedMaskDoesNotClashWithMaskParameters() throws Exception {
+        VoCompiler.Result result = new VoCompiler()
+                .source("demo.Item",
+                        "package demo;",
+                        "import cn.dongjak.annotations.vo.*;",
+                        "@lombok.Data",
+                        "@VOS({@VO(fieldMask = true, delta = true),",
+                        "        @VO(sceneName = \"Chain\", mappingMode = VO.MappingMode.GETTER_CHAIN, fieldMask = true, delta = true)})",
+                        "public class Item {",
+                        "    private int mask;",
+                        "    private String name;",
+                        "}")
+                .compile();
+        assertTrue(result.report(), result.isSuccess());
+
+        for (String voName : Arrays.asList("demo.ItemVO", "demo.ItemVOForChain")) {
+            Class<?> itemClass = result.load("demo.Item");
+            Object item = itemClass.newInstance();
+            itemClass.getMethod("setMask", int.class).invoke(item, 7);
+            itemClass.getMethod("setName", String.class).invoke(item, "n");
+            Class<?> voClass = result.load(voName);
+            long fieldMask = voClass.getField("FIELD_MASK").getLong(null);
+            Object vo = voClass.getMethod("from", itemClass, long.class).invoke(null, item, fieldMask);
+            assertEquals(7, voClass.getMethod("getMask").invoke(vo));
+            assertNull(voClass.getMethod("getName").invoke(vo));
+
+            StringWriter json = new StringWriter();
+            voClass.getMethod("writeDelta", voClass, long.class, Appendable.class).invoke(null, vo, fieldMask, json);
+            assertEquals("{\"mask\":7}", json.toString());
+        }
+    }
+
+    @Test
+    public void getterChainMapsNullNestedVoToNull() throws Exception {
+        VoCompiler.Result result = new VoCompiler()
+                .source("demo.Part",
+                        "package demo;",
+                        "@lombok.Data @cn.dongjak.annotations.vo.VO",
+                        "public class Part {",
+                        "    private String name;",
+                        "}")
+                .source("demo.Whole",
+                        "package demo;",
+                        "import cn.dongjak.annotations.vo.*;",
+                        "@lombok.Data",
+                        "@VOS({@VO, @VO(sceneName = \"Chain\", mappingMode = VO.MappingMode.GETTER_CHAIN)})",
+                        "public class Whole {",
+                        "    @UseVo(\"demo.PartVO\") private Part part;",
+                        "}")
+                .compile();
+        assertTrue(result.report(), result.isSuccess());
+
+        Class<?> wholeClass = result.load("demo.Whole");
+        Object whole = wholeClass.newInstance();
+        Class<?> optionalClass = result.load("demo.WholeVO");
+        Class<?> chainClass = result.load("demo.WholeVOForChain");
+        assertNotNull(optionalClass.getMethod("getPart").invoke(optionalClass.getMethod("from", wholeClass).invoke(null, whole)));
+        assertNull(chainClass.getMethod("getPart").invoke(chainClass.getMethod("from", wholeClass).invoke(null, whole)));
+    }
+
+    @Test
+    public void getterChainMapsMutualReferencesWithNullLinks() throws Exception {
+        VoCompiler.Result result = new VoCompiler()
+                .source("demo.Left",
+                        "package demo;",
+                        "import cn.dongjak.annotations.vo.*;",
+                        "@lombok.Data @VO(mappingMode = VO.MappingMode.GETTER_CHAIN)",
+                        "public class Left {",
+                        "    private String name;",
+                        "    @UseVo(\"demo.RightVO\") private Right right;",
+                        "}")
+                .source("demo.Right",
+                        "package demo;",
+                        "import cn.dongjak.annotations.vo.*;",
+                        "@lombok.Data @VO(mappingMode = VO.MappingMode.GETTER_CHAIN)",
+                        "public class Right {",
+                        "    @UseVo(\"demo.LeftVO\") private Left left;",
+                        "}")
+                .compile();
+        assertTrue(result.report(), result.isSuccess());
+
+        Class<?> leftClass = result.load("demo.Left");
+        Class<?> rightClass = result.load("demo.Right");
+        Object left = leftClass.newInstance();
+        leftClass.getMethod("setRight", rightClass).invoke(left, rightClass.newInstance());
+        Class<?> leftVoClass = result.load("demo.LeftVO");
+        Class<?> rightVoClass = result.load("demo.RightVO");
+        Object rightVo = leftVoClass.getMethod("getRight").invoke(leftVoClass.getMethod("from", leftClass).invoke(null, left));
+        assertNotNull(rightVo);
+        assertNull(rightVoClass.getMethod("getLeft").invoke(rightVo));
+    }
+
+    @Test
+    public void fieldMaskMapsOnlySelectedFields() throws Exception {
+        VoCompiler.Result result = new VoCompiler()
+                .source("demo.Person",
+                        "package demo;",
+                        "@lombok.Data @cn.dongjak.annotations.vo.VO(fieldMask = true)",
+                        "public class Person {",
+                        "    private String name;",
+                        "    private int age;",
+                        "}")
+                .compile();
+        assertTrue(result.report(), result.isSuccess());
+
+        Class<?> personClass = result.load("demo.Person");
+        Object person = person(personClass, "p", 30);
+        Class<?> voClass = result.load("demo.PersonVO");
+        long mask = (long) voClass.getMethod("parseMask", String.class).invoke(null, " age ");
+        assertEquals(voClass.getField("FIELD_AGE").getLong(null), mask);
+        assertEquals(voClass.getField("ALL_FIELDS").getLong(null), voClass.getMethod("parseMask", String.class).invoke(null, (Object) null));
+
+        Object vo = voClass.getMethod("from", personClass, long.class).invoke(null, person, mask);
+        assertNull(voClass.getMethod("getName").invoke(vo));
+        assertEquals(30, voClass.getMethod("getAge").invoke(vo));
+        List<?> vos = (List<?>) voClass.getMethod("fromList", List.class, long.class).invoke(null, Arrays.asList(person, null), mask);
+        assertEquals(vo, vos.get(0));
+        assertNull(vos.get(1));
+    }
+
+    @Test
+    public void deltaWritesChangedFieldsOnly() throws Exception {
+        VoCompiler.Result result = new VoCompiler()
+                .source("demo.Person",
+                        "package demo;",
+                        "@lombok.Data @cn.dongjak.annotations.vo.VO(delta = true)",
+                        "public class Person {",
+                        "    private String name;",
+                        "    private int age;",
+                        "}")
+                .compile();
+        assertTrue(result.report(), result.isSuccess());
+
+        Class<?> personClass = result.load("demo.Person");
+        Class<?> voClass = result.load("demo.PersonVO");
+        Method from = voClass.getMethod("from", personClass);
+        Object previous = from.invoke(null, person(personClass, "p", 30));
+        Object current = from.invoke(null, person(personClass, "p", 31));
+        Method diff = voClass.getMethod("diff", voClass, voClass);
+        long mask = (long) diff.invoke(null, previous, current);
+        assertEquals(voClass.getField("FIELD_AGE").getLong(null), mask);
+        assertEquals(0L, diff.invoke(null, current, from.invoke(null, person(personClass, "p", 31))));
+        assertEquals(voClass.getField("ALL_FIELDS").getLong(null), diff.invoke(null, null, current));
+
+        StringWriter json = new StringWriter();
+        voClass.getMethod("writeDelta", voClass, long.class, Appendable.class).invoke(null, current, mask, json);
+        assertEquals("{\"age\":31}", json.toString());
+    }
+
+    @Test
+    public void mappingContextMapsSharedAndCyclicEntitiesOnce() throws Exception {
+        VoCompiler.Result result = new VoCompiler()
+                .source("demo.Node",
+                        "package demo;",
+                        "import cn.dongjak.annotations.vo.*;",
+                        "@lombok.Getter @lombok.Setter @VO(mappingContext = true)",
+                        "public class Node {",
+                        "    private String name;",
+                        "    @UseVo(\"demo.NodeVO\") private Node next;",
+                        "}")
+                .compile();
+        assertTrue(result.report(), result.isSuccess());
+
+        Class<?> nodeClass = result.load("demo.Node");
+        Object first = nodeClass.newInstance();
+        Object second = nodeClass.newInstance();
+        nodeClass.getMethod("setNext", nodeClass).invoke(first, second);
+        nodeClass.getMethod("setNext", nodeClass).invoke(second, first);
+        Class<?> voClass = result.load("demo.NodeVO");
+        Method getNext = voClass.getMethod("getNext");
+        List<?> vos = (List<?>) voClass.getMethod("fromList", List.class, MappingContext.class)
+                .invoke(null, Arrays.asList(first, second, first), new MappingContext());
+        assertSame(vos.get(0), vos.get(2));
+        assertSame(vos.get(1), getNext.invoke(vos.get(0)));
+        assertSame(vos.get(0), getNext.invoke(vos.get(1)));
+        assertNull(voClass.getMethod("from", nodeClass, MappingContext.class).invoke(null, null, new MappingContext()));
+    }
+
+    @Test
+    public void cacheReusesVoUntilVersionChanges() throws Exception {
+        VoCompiler.Result result = new VoCompiler()
+                .source("demo.Tag",
+                        "package demo;",
+                        "import cn.dongjak.annotations.vo.*;",
+                        "@lombok.Data @VO(layout = VO.Layout.IMMUTABLE, cacheSize = 16)",
+                        "public class Tag {",
+                        "    @javax.persistence.Id private long id;",
+                        "    @javax.persistence.Version private int version;",
+                        "    private String name;",
+                        "}")
+                .compile();
+        assertTrue(result.report(), result.isSuccess());
+
+        Class<?> tagClass = result.load("demo.Tag");
+        Object tag = tagClass.newInstance();
+        tagClass.getMethod("setId", long.class).invoke(tag, 1L);
+        tagClass.getMethod("setName", String.class).invoke(tag, "a");
+        Class<?> voClass = result.load("demo.TagVO");
+        Method from = voClass.getMethod("from", tagClass);
+        Object vo = from.invoke(null, tag);
+        assertSame(vo, from.invoke(null, tag));
+
+        tagClass.getMethod("setName", String.class).invoke(tag, "b");
+        tagClass.getMethod("setVersion", int.class).invoke(tag, 1);
+        Object changed = from.invoke(null, tag);
+        assertNotSame(vo, changed);
+        assertEquals("b", voClass.getMethod("getName").invoke(changed));
+        assertSame(changed, from.invoke(null, tag));
+
+        //标识为0的实体尚未保存,不使用缓存
+        Object unsaved = tagClass.newInstance();
+        assertNotSame(from.invoke(null, unsaved), from.invoke(null, unsaved));
+    }
+
+    @Test
+    public void jsonWriterWritesEntityDirectly() throws Exception {
+        VoCompiler.Result result = new VoCompiler()
+                .source("demo.Part",
+                        "package demo;",
+                        "@lombok.Data @cn.dongjak.annotations.vo.VO(jsonWriter = true)",
+                        "public class Part {",
+                        "    private String name;",
+                        "}")
+                .source("demo.Whole",
+                        "package demo;",
+                        "import cn.dongjak.annotations.vo.*;",
+                        "@lombok.Data @VO(jsonWriter = true)",
+                        "public class Whole {",
+                        "    private String name;",
+                        "    private int count;",
+                        "    private String note;",
+                        "    private java.util.List<String> tags;",
+                        "    @UseVo(\"demo.PartVO\") private java.util.List<Part> parts;",
+                        "}")
+                .compile();
+        assertTrue(result.report(), result.isSuccess());
+
+        Class<?> partClass = result.load("demo.Part");
+        Object part = partClass.newInstance();
+        partClass.getMethod("setName", String.class).invoke(part, "\u00e9");
+        Class<?> wholeClass = result.load("demo.Whole");
+        Object whole = wholeClass.newInstance();
+        wholeClass.getMethod("setName", String.class).invoke(whole, "a\"b");
+        wholeClass.getMethod("setCount", int.class).invoke(whole, 2);
+        wholeClass.getMethod("setTags", List.class).invoke(whole, Arrays.asList("x", null));
+        wholeClass.getMethod("setParts", List.class).invoke(whole, Arrays.asList(part));
+        String expected = "{\"count\":2,\"name\":\"a\\\"b\",\"parts\":[{\"name\":\"\u00e9\"}],\"tags\":[\"x\",null]}";
+
+        Class<?> voClass = result.load("demo.WholeVO");
+        StringWriter json = new StringWriter();
+        voClass.getMethod("writeJson", wholeClass, Appendable.class).invoke(null, whole, json);
+        assertEquals(expected, json.toString());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        voClass.getMethod("writeJson", wholeClass, OutputStream.class).invoke(null, whole, bytes);
+        assertEquals(expected, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void projectionMapsTuplesInQueryOrder() throws Exception {
+        VoCompiler.Result result = new VoCompiler()
+                .source("demo.Person",
+                        "package demo;",
+                        "@lombok.Data @cn.dongjak.annotations.vo.VO(projection = true)",
+                        "public class Person {",
+                        "    private String name;",
+                        "    private int age;",
+                        "}")
+                .compile();
+        assertTrue(result.report(), result.isSuccess());
+
+        Class<?> voClass = result.load("demo.PersonVO");
+        assertEquals("select e.name, e.age from Person e", voClass.getField("PROJECTION_QUERY").get(null));
+        Object vo = voClass.getMethod("fromTuple", Tuple.class).invoke(null, tuple("p", 30));
+        assertEquals("p", voClass.getMethod("getName").invoke(vo));
+        assertEquals(30, voClass.getMethod("getAge").invoke(vo));
+        List<?> vos = (List<?>) voClass.getMethod("fromTuples", List.class).invoke(null, Arrays.asList(tuple("q", null)));
+        assertEquals("q", voClass.getMethod("getName").invoke(vos.get(0)));
+        assertEquals(0, voClass.getMethod("getAge").invoke(vos.get(0)));
+    }
+
+    @Test
+    public void maskAndDeltaMethodsAreOptIn() throws Exception {
+        VoCompiler.Result result = new VoCompiler()
+                .source("demo.Plain",
+                        "package demo;",
+                        "@lombok.Data @cn.dongjak.annotations.vo.VO",
+                        "public class Plain {",
+                        "    private String name;",
+                        "}")
+                .compile();
+        assertTrue(result.report(), result.isSuccess());
+        Class<?> voClass = result.load("demo.PlainVO");
+        for (Method method : voClass.getMethods())
+            assertFalse(method.getName(), Arrays.asList("parseMask", "diff", "writeDelta", "writeTo", "readFrom").contains(method.getName()));
+        assertFalse(Arrays.stream(voClass.getFields()).anyMatch(o -> o.getName().equals("ALL_FIELDS")));
+    }
+
+    @Test
+    public void deltaRequiresDeltaOnNestedVo() {
+        VoCompiler.Result result = new VoCompiler()
+                .source("demo.Part",
+                        "package demo;",
+                        "@lombok.Data @cn.dongjak.annotations.vo.VO",
+                        "public class Part {",
+                        "    private String name;",
+                        "}")
+                .source("demo.Whole",
+                        "package demo;",
+                        "@lombok.Data @cn.dongjak.annotations.vo.VO(delta = true)",
+                        "public class Whole {",
+                        "    @cn.dongjak.annotations.vo.UseVo(\"demo.PartVO\") private Part part;",
+                        "}")
+                .compile();
+        assertFalse(result.isSuccess());
+        assertEquals(result.report(), 1, result.messages(Diagnostic.Kind.ERROR).size());
+        assertTrue(result.report(), result.messages(Diagnostic.Kind.ERROR).get(0).contains("demo.PartVO没有打开[delta]"));
+    }
+
+    @Test
+    public void tooManyFieldsForMaskIsReported() {
+        String fields = IntStream.range(0, 65).mapToObj(i -> "    private int f" + i + ";").collect(Collectors.joining("\n"));
+        VoCompiler.Result result = new VoCompiler()
+                .source("demo.Wide",
+                        "package demo;",
+                        "@lombok.Data @cn.dongjak.annotations.vo.VO(fieldMask = true)",
+                        "public class Wide {",
+                        fields,
+                        "}")
+                .compile();
+        assertTrue(result.report(), result.isSuccess());
+        assertTrue(result.report(), result.messages(Diagnostic.Kind.WARNING).stream()
+                .anyMatch(o -> o.contains("WideVO有65个字段,超过64个,不生成字段掩码方法")));
+    }
+
+    private static Object person(Class<?> personClass, String name, int age) throws ReflectiveOperationException {
+        Object person = personClass.newInstance();
+        personClass.getMethod("setName", String.class).invoke(person, name);
+        personClass.getMethod("setAge", int.class).invoke(person, age);
+        return person;
+    }
+
+    /**
+     * 只实现{@code get(int)}的Tuple
+     */
+    private static Tuple tuple(Object... values) {
+        return (Tuple) Proxy.newProxyInstance(Tuple.class.getClassLoader(), new Class<?>[]{Tuple.class}, (proxy, method, args) -> {
+            if (method.getName().equals("get") && args.length == 1 && args[0] instanceof Integer)
+                return values[(Integer) args[0]];
+            throw new UnsupportedOperationException(method.getName());
+        });
+    }
+}
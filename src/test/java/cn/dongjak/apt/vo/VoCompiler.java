@@ -0,0 +1,155 @@
+package cn.dongjak.apt.vo;
+
+import javax.annotation.processing.Processor;
+import javax.tools.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 在测试中用javac编译实体类源码,同时运行VO处理器和lombok,编译结果可以直接加载运行
+ */
+class VoCompiler {
+
+    private static final String LOMBOK_PROCESSOR = "lombok.launch.AnnotationProcessorHider$AnnotationProcessor";
+
+    private final Map<String, String> sources = new LinkedHashMap<>();
+
+    private final List<String> options = new ArrayList<>();
+
+    /**
+     * 添加一个源文件
+     *
+     * @param className 类的全限定名
+     * @param lines     源码,每个参数一行
+     */
+    VoCompiler source(String className, String... lines) {
+        sources.put(className, String.join("\n", lines));
+        return this;
+    }
+
+    VoCompiler option(String option) {
+        options.add(option);
+        return this;
+    }
+
+    Result compile() {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try {
+            Path output = Files.createTempDirectory("vo-compiler");
+            List<String> compilerOptions = new ArrayList<>(Arrays.asList("-d", output.toString(), "-s", output.toString(),
+                    "-encoding", "UTF-8", "-classpath", System.getProperty("java.class.path")));
+            compilerOptions.addAll(options);
+            List<JavaFileObject> files = sources.entrySet().stream()
+                    .map(o -> new Source(o.getKey(), o.getValue())).collect(Collectors.toList());
+            JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics, compilerOptions, null, files);
+            task.setProcessors(Arrays.asList(new VOAnnotationProcessor(), lombokProcessor(compiler)));
+            boolean success = task.call();
+            return new Result(success, diagnostics.getDiagnostics(), output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * lombok需要访问javac的内部类,JDK 8中它们不在测试的类加载器中,
+     * 因此lombok的类由以javac的类加载器为父加载器的类加载器优先自己加载
+     */
+    private static Processor lombokProcessor(JavaCompiler compiler) throws ReflectiveOperationException {
+        URL lombokJar = Class.forName(LOMBOK_PROCESSOR).getProtectionDomain().getCodeSource().getLocation();
+        ClassLoader classLoader = new URLClassLoader(new URL[]{lombokJar}, compiler.getClass().getClassLoader()) {
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                if (!name.startsWith("lombok.")) return super.loadClass(name, resolve);
+                synchronized (getClassLoadingLock(name)) {
+                    Class<?> loaded = findLoadedClass(name);
+                    return loaded != null ? loaded : findClass(name);
+                }
+            }
+        };
+        return (Processor) Class.forName(LOMBOK_PROCESSOR, true, classLoader).newInstance();
+    }
+
+    static class Result {
+
+        private final boolean success;
+
+        private final List<Diagnostic<? extends JavaFileObject>> diagnostics;
+
+        private final Path output;
+
+        private ClassLoader classLoader;
+
+        Result(boolean success, List<Diagnostic<? extends JavaFileObject>> diagnostics, Path output) {
+            this.success = success;
+            this.diagnostics = diagnostics;
+            this.output = output;
+        }
+
+        boolean isSuccess() {
+            return success;
+        }
+
+        /**
+         * 指定级别的诊断信息
+         */
+        List<String> messages(Diagnostic.Kind kind) {
+            return diagnostics.stream().filter(o -> o.getKind() == kind)
+                    .map(o -> o.getMessage(Locale.ROOT)).collect(Collectors.toList());
+        }
+
+        /**
+         * 所有诊断信息,用于断言失败时的说明
+         */
+        String report() {
+            return diagnostics.stream().map(o -> o.getKind() + ": " + o.getMessage(Locale.ROOT)
+                    + (o.getSource() == null ? "" : " (" + o.getSource().getName() + ":" + o.getLineNumber() + ")"))
+                    .collect(Collectors.joining("\n"));
+        }
+
+        /**
+         * 读取生成的源码
+         *
+         * @param className 类的全限定名
+         */
+        String generatedSource(String className) throws IOException {
+            return new String(Files.readAllBytes(output.resolve(className.replace('.', File.separatorChar) + ".java")), "UTF-8");
+        }
+
+        Class<?> load(String className) throws ClassNotFoundException {
+            if (classLoader == null) {
+                try {
+                    classLoader = new URLClassLoader(new URL[]{output.toUri().toURL()}, VoCompiler.class.getClassLoader());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return Class.forName(className, true, classLoader);
+        }
+    }
+
+    private static class Source extends SimpleJavaFileObject {
+
+        private final String code;
+
+        Source(String className, String code) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package cn.dongjak.vo.codec;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class BinaryCodecsTest {
+
+    @Test
+    public void varLongRoundTrip() throws IOException {
+        for (long value : new long[]{0L, 1L, -1L, 63L, -64L, 64L, 300L, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            BinaryCodecs.writeVarLong(new DataOutputStream(bytes), value);
+            assertEquals(value, BinaryCodecs.readVarLong(input(bytes)));
+        }
+    }
+
+    @Test
+    public void smallVarLongUsesOneByte() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryCodecs.writeVarLong(new DataOutputStream(bytes), -64L);
+        assertEquals(1, bytes.size());
+    }
+
+    @Test
+    public void stringRoundTrip() throws IOException {
+        for (String value : new String[]{"", "abc", "\u4e2d\u6587", "\ud83d\ude00"}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            BinaryCodecs.writeString(new DataOutputStream(bytes), value);
+            assertEquals(value, BinaryCodecs.readString(input(bytes)));
+        }
+    }
+
+    @Test
+    public void scalarObjectsRoundTrip() throws IOException {
+        Object[] values = {null, true, (byte) -3, (short) 300, 42, -42L, 1.5f, -2.25d, 'x', "text",
+                new Date(1234L), new BigDecimal("12.3400"), new BigInteger("123456789012345678901234567890"),
+                LocalDate.of(2020, 2, 29), LocalDateTime.of(2020, 2, 29, 23, 59, 58, 123), Instant.ofEpochSecond(-5L, 999)};
+        for (Object value : values) {
+            Object result = roundTrip(value);
+            assertEquals(value, result);
+            if (value != null)
+                assertSame(value.getClass(), result.getClass());
+        }
+    }
+
+    @Test
+    public void sqlDatesKeepTheirType() throws IOException {
+        Timestamp timestamp = new Timestamp(1000L);
+        timestamp.setNanos(123456789);
+        Object result = roundTrip(timestamp);
+        assertSame(Timestamp.class, result.getClass());
+        assertEquals(timestamp, result);
+        assertEquals(123456789, ((Timestamp) result).getNanos());
+
+        Object date = roundTrip(new java.sql.Date(86400000L));
+        assertSame(java.sql.Date.class, date.getClass());
+        assertEquals(86400000L, ((java.sql.Date) date).getTime());
+
+        Object time = roundTrip(new Time(3600000L));
+        assertSame(Time.class, time.getClass());
+        assertEquals(3600000L, ((Time) time).getTime());
+    }
+
+    @Test
+    public void timestampRoundTrip() throws IOException {
+        Timestamp timestamp = new Timestamp(-1L);
+        timestamp.setNanos(1);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryCodecs.writeTimestamp(new DataOutputStream(bytes), timestamp);
+        assertEquals(timestamp, BinaryCodecs.readTimestamp(input(bytes)));
+    }
+
+    @Test
+    public void collectionsRoundTrip() throws IOException {
+        List<Object> list = Arrays.asList("a", null, 1, Arrays.asList(2L, 3L));
+        assertEquals(list, roundTrip(list));
+
+        Set<String> set = new LinkedHashSet<>(Arrays.asList("b", "a", "c"));
+        Object resultSet = roundTrip(set);
+        assertTrue(resultSet instanceof LinkedHashSet);
+        assertEquals(new ArrayList<>(set), new ArrayList<>((Set<?>) resultSet));
+
+        Map<String, Integer> map = new LinkedHashMap<>();
+        map.put("z", 1);
+        map.put("a", null);
+        Object resultMap = roundTrip(map);
+        assertTrue(resultMap instanceof LinkedHashMap);
+        assertEquals(new ArrayList<>(map.keySet()), new ArrayList<>(((Map<?, ?>) resultMap).keySet()));
+        assertEquals(map, resultMap);
+    }
+
+    @Test
+    public void arraysRoundTrip() throws IOException {
+        assertArrayEquals(new byte[]{1, -2, 3}, (byte[]) roundTrip(new byte[]{1, -2, 3}));
+        assertArrayEquals(new int[]{Integer.MIN_VALUE, 0, 7}, (int[]) roundTrip(new int[]{Integer.MIN_VALUE, 0, 7}));
+        assertArrayEquals(new long[]{Long.MAX_VALUE, -1L}, (long[]) roundTrip(new long[]{Long.MAX_VALUE, -1L}));
+        assertArrayEquals(new double[]{0.5, Double.NaN}, (double[]) roundTrip(new double[]{0.5, Double.NaN}), 0d);
+        assertArrayEquals(new String[]{"a", null}, (String[]) roundTrip(new String[]{"a", null}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedTypeIsRejected() throws IOException {
+        BinaryCodecs.writeObject(new DataOutputStream(new ByteArrayOutputStream()), UUID.randomUUID());
+    }
+
+    @Test(expected = IOException.class)
+    public void unknownTagIsRejected() throws IOException {
+        BinaryCodecs.readObject(new DataInputStream(new ByteArrayInputStream(new byte[]{(byte) 0xff})));
+    }
+
+    @Test
+    public void byteBufferRoundTrip() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        BinaryCodecs.writeObject(BinaryCodecs.output(buffer), "buffer");
+        BinaryCodecs.writeVarLong(BinaryCodecs.output(buffer), 99L);
+        buffer.flip();
+        assertEquals("buffer", BinaryCodecs.readObject(BinaryCodecs.input(buffer)));
+        assertEquals(99L, BinaryCodecs.readVarLong(BinaryCodecs.input(buffer)));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void schemaMismatchIsReported() throws IOException {
+        BinaryCodecs.checkSchema(String.class, 1, 1);
+        try {
+            BinaryCodecs.checkSchema(String.class, 1, 2);
+            fail();
+        } catch (SchemaMismatchException e) {
+            assertSame(String.class, e.getVoClass());
+            assertEquals(1, e.getExpectedHash());
+            assertEquals(2, e.getActualHash());
+        }
+    }
+
+    private static Object roundTrip(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryCodecs.writeObject(new DataOutputStream(bytes), value);
+        DataInputStream in = input(bytes);
+        Object result = BinaryCodecs.readObject(in);
+        assertEquals(-1, in.read());
+        return result;
+    }
+
+    private static DataInputStream input(ByteArrayOutputStream bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+}
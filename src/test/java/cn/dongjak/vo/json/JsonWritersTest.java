@@ -0,0 +1,47 @@
+package cn.dongjak.vo.json;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class JsonWritersTest {
+
+    @Test
+    public void boxedFloatIsWrittenLikePrimitiveFloat() throws IOException {
+        for (float value : new float[]{1.1f, -0.3f, 3.4028235E38f, 1.0E-10f}) {
+            StringBuilder primitive = new StringBuilder();
+            JsonWriters.writeValue(primitive, value);
+            StringBuilder boxed = new StringBuilder();
+            JsonWriters.writeValue(boxed, (Object) value);
+            assertEquals(primitive.toString(), boxed.toString());
+        }
+        assertEquals("1.1", write(1.1f));
+    }
+
+    @Test
+    public void nonFiniteNumbersAreWrittenAsNull() throws IOException {
+        assertEquals("null", write(Float.NaN));
+        assertEquals("null", write(Float.POSITIVE_INFINITY));
+        assertEquals("null", write(Double.NaN));
+        assertEquals("null", write(Double.NEGATIVE_INFINITY));
+    }
+
+    @Test
+    public void boxedDoubleIsWrittenLikePrimitiveDouble() throws IOException {
+        assertEquals(Double.toString(0.1d), write(0.1d));
+    }
+
+    @Test
+    public void floatsInCollectionsKeepTheirPrecision() throws IOException {
+        assertEquals("[1.1,null]", write(Arrays.asList(1.1f, null)));
+    }
+
+    private static String write(Object value) throws IOException {
+        StringBuilder out = new StringBuilder();
+        JsonWriters.writeValue(out, value);
+        return out.toString();
+    }
+}